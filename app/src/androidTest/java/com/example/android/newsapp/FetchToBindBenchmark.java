@@ -0,0 +1,396 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.Loader;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Measures the whole pipeline against a {@link GuardianMockServer}: the request, parse and
+ * formatting run by {@link NewsLoader}, the delivery to the main thread and the binding and
+ * layout of the first screen of rows by {@link NewsAdapter}. Reports p50/p95/p99 of the
+ * end-to-end latency of the complete list and of the first batch of rows published while the
+ * response is read, and the peak heap growth for each result count as JSON to
+ * {@code <external files dir>/benchmarks/fetch-to-bind.json}, and fails when the
+ * thresholds passed as instrumentation arguments are crossed, e.g.
+ * {@code -e fetchToBindMaxP95Ms 1500 -e fetchToBindResults 50,1000,100000}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FetchToBindBenchmark {
+
+    private static final String LOG_TAG = FetchToBindBenchmark.class.getSimpleName();
+
+    /**
+     * Instrumentation arguments, the defaults are set in the app's build.gradle
+     */
+    private static final String ARG_RESULTS = "fetchToBindResults";
+    private static final String ARG_ITERATIONS = "fetchToBindIterations";
+    private static final String ARG_LATENCY_MS = "fetchToBindLatencyMs";
+    private static final String ARG_BYTES_PER_SECOND = "fetchToBindBytesPerSecond";
+    private static final String ARG_ERROR_RATE = "fetchToBindErrorRate";
+    private static final String ARG_MAX_P95_MS = "fetchToBindMaxP95Ms";
+    private static final String ARG_MAX_HEAP_MB = "fetchToBindMaxHeapMb";
+
+    private static final int WARMUP_ITERATIONS = 3;
+
+    private static final long TIMEOUT_SECONDS = 120;
+
+    /**
+     * Size of the list laid out, a phone screen
+     */
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+
+    /**
+     * Interval at which the used heap is sampled
+     */
+    private static final long HEAP_SAMPLE_MILLIS = 2;
+
+    @Test
+    public void fetchToBind() throws Exception {
+
+        Bundle arguments = InstrumentationRegistry.getArguments();
+
+        int iterations = Integer.parseInt(arguments.getString(ARG_ITERATIONS, "30"));
+        long latencyMillis = Long.parseLong(arguments.getString(ARG_LATENCY_MS, "0"));
+        long bytesPerSecond = Long.parseLong(arguments.getString(ARG_BYTES_PER_SECOND, "0"));
+        double errorRate = Double.parseDouble(arguments.getString(ARG_ERROR_RATE, "0"));
+        long maxP95Millis = Long.parseLong(arguments.getString(ARG_MAX_P95_MS, "0"));
+        long maxHeapMb = Long.parseLong(arguments.getString(ARG_MAX_HEAP_MB, "0"));
+
+        List<String> reports = new ArrayList<>();
+        List<String> regressions = new ArrayList<>();
+
+        for (String results : arguments.getString(ARG_RESULTS, "50,1000").split(",")) {
+
+            int count = Integer.parseInt(results.trim());
+
+            GuardianMockServer server = new GuardianMockServer.Builder()
+                    .totalResults(count)
+                    .maxPageSize(count)
+                    .latencyMillis(latencyMillis)
+                    .bytesPerSecond(bytesPerSecond)
+                    .errorRate(errorRate)
+                    .start();
+
+            try {
+
+                Result result = measure(server, count, iterations);
+                String report = result.toJson(count, latencyMillis, bytesPerSecond, errorRate);
+
+                Log.i(LOG_TAG, report);
+                reports.add(report);
+
+                if (maxP95Millis > 0 && result.percentile(95) > maxP95Millis) {
+                    regressions.add(count + " results: p95 " + result.percentile(95) + " ms > " + maxP95Millis + " ms");
+                }
+
+                if (maxHeapMb > 0 && result.peakHeapBytes > maxHeapMb * 1024 * 1024) {
+                    regressions.add(count + " results: peak heap " + result.peakHeapBytes / (1024 * 1024)
+                            + " MB > " + maxHeapMb + " MB");
+                }
+
+            } finally {
+                server.close();
+            }
+        }
+
+        writeResults("[" + join(reports) + "]");
+
+        if (!regressions.isEmpty()) {
+            fail("Regression threshold crossed: " + regressions);
+        }
+    }
+
+    // Runs the warm-up and measured iterations of one result count
+    private static Result measure(GuardianMockServer server, int count, int iterations) throws Exception {
+
+        Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+        NewsQuery query = new NewsQuery(server.searchUrl(), null, "", "", "", "newest", String.valueOf(count));
+
+        // Also renders the responses once, so that the server's copy is not counted in the heap
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run(context, query);
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+        int requests = server.searchRequests();
+        int injectedErrors = server.injectedErrors();
+
+        HeapSampler sampler = new HeapSampler();
+        sampler.start();
+
+        Result result = new Result(iterations);
+
+        try {
+            for (int i = 0; i < iterations; i++) {
+                Run run = run(context, query);
+                result.add(run);
+            }
+        } finally {
+            sampler.interrupt();
+            sampler.join();
+        }
+
+        result.peakHeapBytes = Math.max(0, sampler.mPeak - baseline);
+        result.requests = server.searchRequests() - requests;
+        result.injectedErrors = server.injectedErrors() - injectedErrors;
+
+        return result;
+    }
+
+    // Loads the query and binds the first screen of rows, on a new loader and adapter
+    private static Run run(final Context context, final NewsQuery query) throws InterruptedException {
+
+        final Run run = new Run();
+        final CountDownLatch done = new CountDownLatch(1);
+        final NewsLoader[] loader = new NewsLoader[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+
+                // An explicit refresh, so that neither fresh results nor recent queries are reused
+                loader[0] = new NewsLoader(context, query, 1, false, true);
+
+                loader[0].registerListener(0, new Loader.OnLoadCompleteListener<List<NewsItem>>() {
+                    @Override
+                    public void onLoadComplete(Loader<List<NewsItem>> completed, List<NewsItem> articles) {
+
+                        long now = System.nanoTime();
+
+                        if (run.firstDeliveredAt == 0) {
+                            run.firstDeliveredAt = now;
+                        }
+
+                        // Only the complete list is measured, the batches published while the
+                        // response is read are followed by it
+                        if (((NewsLoader) completed).isInterim(articles)) {
+                            return;
+                        }
+
+                        run.deliveredAt = now;
+                        run.articles = articles == null ? 0 : articles.size();
+
+                        // The first list submitted to a new adapter is bound without diffing
+                        RecyclerView list = new RecyclerView(context);
+                        list.setLayoutManager(new LinearLayoutManager(context));
+                        NewsAdapter adapter = new NewsAdapter(context, null);
+                        list.setAdapter(adapter);
+                        adapter.submitList(articles);
+
+                        list.measure(View.MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, View.MeasureSpec.EXACTLY),
+                                View.MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, View.MeasureSpec.EXACTLY));
+                        list.layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+                        run.boundAt = System.nanoTime();
+                        run.boundRows = list.getChildCount();
+                        done.countDown();
+                    }
+                });
+
+                run.startedAt = System.nanoTime();
+                loader[0].startLoading();
+            }
+        });
+
+        boolean completed = done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                loader[0].reset();
+            }
+        });
+
+        assertTrue("No result within " + TIMEOUT_SECONDS + " s", completed);
+
+        return run;
+    }
+
+    private static void writeResults(String json) throws IOException {
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        File directory = new File(context.getExternalFilesDir(null), "benchmarks");
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "fetch-to-bind.json")),
+                Charset.forName("UTF-8"));
+
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String join(List<String> parts) {
+
+        StringBuilder joined = new StringBuilder();
+
+        for (String part : parts) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(part);
+        }
+
+        return joined.toString();
+    }
+
+    /**
+     * Timestamps of one load
+     */
+    private static class Run {
+
+        private long startedAt;
+
+        /**
+         * First delivery, a batch published while the response is read or the complete list
+         */
+        private long firstDeliveredAt;
+
+        private long deliveredAt;
+
+        private long boundAt;
+
+        private int articles;
+
+        private int boundRows;
+    }
+
+    /**
+     * Latencies of the measured loads of one result count
+     */
+    private static class Result {
+
+        private final long[] totalMillis;
+
+        private final long[] fetchMillis;
+
+        private final long[] bindMillis;
+
+        private final long[] firstBatchMillis;
+
+        private int size;
+
+        private int emptyResults;
+
+        private long peakHeapBytes;
+
+        private int requests;
+
+        private int injectedErrors;
+
+        private Result(int iterations) {
+            totalMillis = new long[iterations];
+            fetchMillis = new long[iterations];
+            bindMillis = new long[iterations];
+            firstBatchMillis = new long[iterations];
+        }
+
+        private void add(Run run) {
+
+            totalMillis[size] = TimeUnit.NANOSECONDS.toMillis(run.boundAt - run.startedAt);
+            fetchMillis[size] = TimeUnit.NANOSECONDS.toMillis(run.deliveredAt - run.startedAt);
+            bindMillis[size] = TimeUnit.NANOSECONDS.toMillis(run.boundAt - run.deliveredAt);
+            firstBatchMillis[size] = TimeUnit.NANOSECONDS.toMillis(run.firstDeliveredAt - run.startedAt);
+            size++;
+
+            // Failed requests come back empty
+            if (run.articles == 0 || run.boundRows == 0) {
+                emptyResults++;
+            }
+        }
+
+        private long percentile(int percent) {
+            return percentile(totalMillis, percent);
+        }
+
+        private long percentile(long[] values, int percent) {
+
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+
+            // Nearest rank
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        private String toJson(int results, long latencyMillis, long bytesPerSecond, double errorRate) {
+            return String.format(Locale.US,
+                    "{\"benchmark\":\"FetchToBindBenchmark.fetchToBind\",\"params\":{\"results\":%d,"
+                            + "\"latencyMs\":%d,\"bytesPerSecond\":%d,\"errorRate\":%.3f},"
+                            + "\"iterations\":%d,\"emptyResults\":%d,\"requests\":%d,\"injectedErrors\":%d,"
+                            + "\"totalMs\":{\"p50\":%d,\"p95\":%d,\"p99\":%d},"
+                            + "\"fetchMs\":{\"p50\":%d,\"p95\":%d,\"p99\":%d},"
+                            + "\"bindMs\":{\"p50\":%d,\"p95\":%d,\"p99\":%d},"
+                            + "\"firstBatchMs\":{\"p50\":%d,\"p95\":%d,\"p99\":%d},"
+                            + "\"peakHeapMb\":%.1f}",
+                    results, latencyMillis, bytesPerSecond, errorRate,
+                    size, emptyResults, requests, injectedErrors,
+                    percentile(totalMillis, 50), percentile(totalMillis, 95), percentile(totalMillis, 99),
+                    percentile(fetchMillis, 50), percentile(fetchMillis, 95), percentile(fetchMillis, 99),
+                    percentile(bindMillis, 50), percentile(bindMillis, 95), percentile(bindMillis, 99),
+                    percentile(firstBatchMillis, 50), percentile(firstBatchMillis, 95),
+                    percentile(firstBatchMillis, 99),
+                    peakHeapBytes / (1024.0 * 1024.0));
+        }
+    }
+
+    /**
+     * Records the highest used heap until interrupted
+     */
+    private static class HeapSampler extends Thread {
+
+        private volatile long mPeak;
+
+        @Override
+        public void run() {
+
+            Runtime runtime = Runtime.getRuntime();
+
+            while (!isInterrupted()) {
+
+                mPeak = Math.max(mPeak, runtime.totalMemory() - runtime.freeMemory());
+
+                try {
+                    Thread.sleep(HEAP_SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
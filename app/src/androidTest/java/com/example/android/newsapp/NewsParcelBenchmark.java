@@ -0,0 +1,115 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.Parcel;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the {@link News} Parcelable round trip. Parcel is backed by native code, so unlike
+ * the parse and transform benchmarks of the benchmark module this one has to run on a device.
+ * Throughput and allocation rate are written as JSON to
+ * {@code <external files dir>/benchmarks/parcel.json}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NewsParcelBenchmark {
+
+    private static final String LOG_TAG = NewsParcelBenchmark.class.getSimpleName();
+
+    private static final int WARMUP_OPERATIONS = 20000;
+
+    private static final int MEASURED_OPERATIONS = 100000;
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void parcelRoundTrip() throws IOException {
+
+        News article = new News("world/2018/may/1", "world", "World news", "2018-05-06T12:34:56Z", NewsDates.parse("2018-05-06T12:34:56Z"),
+                "Headline number 1 | Jane Doe", "https://www.theguardian.com/world/2018/may/1",
+                "Jane Doe", "Trail text for article 1", "https://media.guim.co.uk/1/500.jpg");
+
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            roundTrip(article);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+
+        long start = System.nanoTime();
+
+        News copy = null;
+        for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+            copy = roundTrip(article);
+        }
+
+        long nanos = System.nanoTime() - start;
+
+        Debug.stopAllocCounting();
+        long allocatedBytes = Debug.getThreadAllocSize();
+
+        assertEquals(article.getArticleTitle(), copy.getArticleTitle());
+        assertEquals(article.getPublishedMillis(), copy.getPublishedMillis());
+
+        double seconds = nanos / 1e9;
+        String json = String.format(Locale.US,
+                "[{\"benchmark\":\"NewsParcelBenchmark.parcelRoundTrip\",\"mode\":\"thrpt\","
+                        + "\"primaryMetric\":{\"score\":%.1f,\"scoreUnit\":\"ops/s\"},"
+                        + "\"secondaryMetrics\":{\"gc.alloc.rate.norm\":{\"score\":%.1f,\"scoreUnit\":\"B/op\"},"
+                        + "\"gc.alloc.rate\":{\"score\":%.3f,\"scoreUnit\":\"MB/sec\"}}}]",
+                MEASURED_OPERATIONS / seconds,
+                (double) allocatedBytes / MEASURED_OPERATIONS,
+                allocatedBytes / seconds / (1024 * 1024));
+
+        Log.i(LOG_TAG, json);
+        writeResults(json);
+    }
+
+    private static News roundTrip(News article) {
+
+        Parcel parcel = Parcel.obtain();
+
+        try {
+
+            article.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return News.CREATOR.createFromParcel(parcel);
+
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static void writeResults(String json) throws IOException {
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        File directory = new File(context.getExternalFilesDir(null), "benchmarks");
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "parcel.json")),
+                Charset.forName("UTF-8"));
+
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Scrolls a list of articles at a steady speed, one frame every 16 ms, and measures the work
+ * done on the main thread by each frame: the scroll, the binding of the rows coming into view
+ * and the drawing of the list. Runs once with the text layouts of the upcoming rows built in
+ * the background by {@link NewsTextLayouts}, and once with every text laid out while binding.
+ * Reports p50/p95/p99 of the frame work, the frames over budget and the text layouts reused,
+ * as JSON to {@code <external files dir>/benchmarks/scroll.json}, and fails when the
+ * thresholds passed as instrumentation arguments are crossed, e.g.
+ * {@code -e scrollMaxP95Ms 8 -e scrollFrames 1200}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScrollBenchmark {
+
+    private static final String LOG_TAG = ScrollBenchmark.class.getSimpleName();
+
+    /**
+     * Instrumentation arguments, the defaults are set in the app's build.gradle
+     */
+    private static final String ARG_ARTICLES = "scrollArticles";
+    private static final String ARG_FRAMES = "scrollFrames";
+    private static final String ARG_PIXELS_PER_FRAME = "scrollPixelsPerFrame";
+    private static final String ARG_MAX_P95_MS = "scrollMaxP95Ms";
+
+    private static final int WARMUP_FRAMES = 60;
+
+    /**
+     * Interval between two frames, and the main thread's budget for one
+     */
+    private static final long FRAME_MILLIS = 16;
+
+    /**
+     * Size of the list laid out, a phone screen
+     */
+    private static final int SCREEN_WIDTH = 1080;
+    private static final int SCREEN_HEIGHT = 1920;
+
+    /**
+     * Nothing listens there, the thumbnails fail at once instead of loading while scrolling
+     */
+    private static final String THUMBNAILS = "http://127.0.0.1:9/";
+
+    @Test
+    public void scroll() throws Exception {
+
+        Bundle arguments = InstrumentationRegistry.getArguments();
+
+        int count = Integer.parseInt(arguments.getString(ARG_ARTICLES, "500"));
+        int frames = Integer.parseInt(arguments.getString(ARG_FRAMES, "600"));
+        int pixelsPerFrame = Integer.parseInt(arguments.getString(ARG_PIXELS_PER_FRAME, "48"));
+        double maxP95Millis = Double.parseDouble(arguments.getString(ARG_MAX_P95_MS, "0"));
+
+        Context context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(), R.style.AppTheme);
+        List<NewsItem> articles = articles(context, count);
+
+        Result onMainThread = measure(context, articles, false, frames, pixelsPerFrame);
+        Result precomputed = measure(context, articles, true, frames, pixelsPerFrame);
+
+        double improvement = onMainThread.percentile(95) == 0 ? 0
+                : 1 - precomputed.percentile(95) / (double) onMainThread.percentile(95);
+
+        String report = String.format(Locale.US,
+                "{\"benchmark\":\"ScrollBenchmark.scroll\",\"params\":{\"articles\":%d,\"frames\":%d,"
+                        + "\"pixelsPerFrame\":%d},\"textLayoutsOnMainThread\":%s,\"precomputedTextLayouts\":%s,"
+                        + "\"p95Improvement\":%.3f}",
+                articles.size(), frames, pixelsPerFrame, onMainThread.toJson(), precomputed.toJson(), improvement);
+
+        Log.i(LOG_TAG, report);
+        writeResults(report);
+
+        if (maxP95Millis > 0 && precomputed.percentile(95) > maxP95Millis * 1000) {
+            fail("Regression threshold crossed: p95 " + precomputed.percentile(95) / 1000.0 + " ms > "
+                    + maxP95Millis + " ms");
+        }
+    }
+
+    // Scrolls a new list of the articles, after a warm-up scroll, and returns the frame work
+    private static Result measure(final Context context, final List<NewsItem> articles,
+                                  final boolean precompute, int frames, final int pixelsPerFrame)
+            throws InterruptedException {
+
+        final RecyclerView[] list = new RecyclerView[1];
+        final NewsAdapter[] adapter = new NewsAdapter[1];
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(SCREEN_WIDTH, SCREEN_HEIGHT, Bitmap.Config.ARGB_8888));
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+
+                list[0] = new RecyclerView(context);
+                list[0].setLayoutManager(new LinearLayoutManager(context));
+                adapter[0] = new NewsAdapter(context, null, precompute);
+                list[0].setAdapter(adapter[0]);
+
+                // The first list submitted to a new adapter is bound without diffing
+                adapter[0].submitList(articles);
+
+                list[0].measure(View.MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, View.MeasureSpec.EXACTLY));
+                list[0].layout(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+            }
+        });
+
+        Result result = new Result(frames);
+        long hits = NewsMetrics.TEXT_LAYOUT_HITS.get();
+        long misses = NewsMetrics.TEXT_LAYOUT_MISSES.get();
+
+        for (int i = 0; i < WARMUP_FRAMES + frames; i++) {
+
+            if (i == WARMUP_FRAMES) {
+                hits = NewsMetrics.TEXT_LAYOUT_HITS.get();
+                misses = NewsMetrics.TEXT_LAYOUT_MISSES.get();
+            }
+
+            final long[] work = new long[1];
+
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+
+                    long start = System.nanoTime();
+
+                    list[0].scrollBy(0, pixelsPerFrame);
+                    list[0].draw(canvas);
+
+                    work[0] = System.nanoTime() - start;
+
+                    // As the scroll listener of the activity does, outside of the measured work
+                    LinearLayoutManager layoutManager = (LinearLayoutManager) list[0].getLayoutManager();
+                    int first = layoutManager.findFirstVisibleItemPosition();
+                    int last = layoutManager.findLastVisibleItemPosition();
+                    adapter[0].prefetch(last + 1, last + 1 + (last - first));
+                }
+            });
+
+            if (i >= WARMUP_FRAMES) {
+                result.add(work[0]);
+            }
+
+            // The main thread stays idle for the rest of the frame, as it would between vsyncs
+            SystemClock.sleep(Math.max(0, FRAME_MILLIS - TimeUnit.NANOSECONDS.toMillis(work[0])));
+        }
+
+        result.textLayoutHits = NewsMetrics.TEXT_LAYOUT_HITS.get() - hits;
+        result.textLayoutMisses = NewsMetrics.TEXT_LAYOUT_MISSES.get() - misses;
+
+        return result;
+    }
+
+    // Formats a synthetic response holding the given number of articles, as the loader does
+    private static List<NewsItem> articles(Context context, int count) throws IOException {
+
+        String json = GuardianPayloads.searchJson(count, 1, count, GuardianPayloads.ALL_FIELDS, true, THUMBNAILS);
+        byte[] payload = json.getBytes(Charset.forName("UTF-8"));
+
+        return NewsLoader.createFormatter(context).format(
+                NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload)));
+    }
+
+    private static void writeResults(String json) throws IOException {
+
+        Context context = InstrumentationRegistry.getTargetContext();
+        File directory = new File(context.getExternalFilesDir(null), "benchmarks");
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, "scroll.json")),
+                Charset.forName("UTF-8"));
+
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Main thread work of the measured frames of one run
+     */
+    private static class Result {
+
+        private final long[] workMicros;
+
+        private int size;
+
+        private int slowFrames;
+
+        private long textLayoutHits;
+
+        private long textLayoutMisses;
+
+        private Result(int frames) {
+            workMicros = new long[frames];
+        }
+
+        private void add(long workNanos) {
+
+            workMicros[size++] = TimeUnit.NANOSECONDS.toMicros(workNanos);
+
+            if (workNanos > TimeUnit.MILLISECONDS.toNanos(FRAME_MILLIS)) {
+                slowFrames++;
+            }
+        }
+
+        private long percentile(int percent) {
+
+            long[] sorted = Arrays.copyOf(workMicros, size);
+            Arrays.sort(sorted);
+
+            // Nearest rank
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        private String toJson() {
+            return String.format(Locale.US,
+                    "{\"frames\":%d,\"slowFrames\":%d,\"frameWorkUs\":{\"p50\":%d,\"p95\":%d,\"p99\":%d},"
+                            + "\"textLayoutHits\":%d,\"textLayoutMisses\":%d}",
+                    size, slowFrames, percentile(50), percentile(95), percentile(99),
+                    textLayoutHits, textLayoutMisses);
+        }
+    }
+}
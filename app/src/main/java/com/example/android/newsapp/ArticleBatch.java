@@ -0,0 +1,447 @@
+package com.example.android.newsapp;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Compact, immutable list of parsed articles stored column by column. The low-cardinality
+ * fields (section id and name, byline) are dictionary-encoded as int codes, so each distinct value is
+ * held once. The text fields are stored UTF-8 encoded in a single byte array (one byte per
+ * character for the mostly ASCII text of the API) and addressed by offset, and the
+ * placeholder values repeated across the list ("No trail text", "No thumbnail") are encoded
+ * like dictionary values. A batch costs a handful of arrays instead of one {@link News} and
+ * seven Strings per article.
+ *
+ * <p>The batch is a {@code List<News>}, so it can be handed to any code expecting one;
+ * {@link #get(int)} then builds a {@link News} on first access and returns the same one
+ * afterwards. Code iterating over many articles should use a {@link Cursor} instead, a
+ * reusable view that reads the columns in place. Every text value is decoded at most once,
+ * on first access, so the memory of the decoded values is only spent on the articles read.
+ */
+final class ArticleBatch extends AbstractList<News> implements RandomAccess {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Text columns, addressed by offset in the shared byte array
+     */
+    private static final int TEXT_ID = 0;
+    private static final int TEXT_DATE = 1;
+    private static final int TEXT_TITLE = 2;
+    private static final int TEXT_URL = 3;
+    private static final int TEXT_TRAIL_TEXT = 4;
+    private static final int TEXT_THUMBNAIL = 5;
+    private static final int TEXT_COLUMNS = 6;
+
+    /**
+     * Values repeated across whole lists, stored as codes in the text columns
+     */
+    private static final String[] COMMON_TEXTS = {"", NewsUtils.KEY_NO_TRAIL_TEXT, NewsUtils.KEY_NO_THUMBNAIL};
+
+    /**
+     * Code of a null value in the text and dictionary columns
+     */
+    private static final int NULL = -1;
+
+    private final int mSize;
+
+    private final String[] mSectionIds;
+
+    private final int[] mSectionIdCodes;
+
+    private final String[] mSections;
+
+    private final int[] mSectionCodes;
+
+    private final String[] mAuthors;
+
+    private final int[] mAuthorCodes;
+
+    private final long[] mPublishedMillis;
+
+    private final byte[] mText;
+
+    /**
+     * Start of every text value in mText, or -(code + 2) for a common text or NULL
+     */
+    private final int[] mTextStarts;
+
+    private final int[] mTextLengths;
+
+    /**
+     * Text values already decoded, by slot, allocated on first access. Threads reading the
+     * same batch may decode a value twice, never a wrong one: Strings are immutable.
+     */
+    private String[] mDecoded;
+
+    /**
+     * Articles already built by {@link #get(int)}, allocated on first access
+     */
+    private News[] mArticles;
+
+    private ArticleBatch(Builder builder) {
+        mSize = builder.mSize;
+        mSectionIds = builder.mSectionIds.toArray(new String[builder.mSectionIds.size()]);
+        mSectionIdCodes = Arrays.copyOf(builder.mSectionIdCodes, mSize);
+        mSections = builder.mSections.toArray(new String[builder.mSections.size()]);
+        mSectionCodes = Arrays.copyOf(builder.mSectionCodes, mSize);
+        mAuthors = builder.mAuthors.toArray(new String[builder.mAuthors.size()]);
+        mAuthorCodes = Arrays.copyOf(builder.mAuthorCodes, mSize);
+        mPublishedMillis = Arrays.copyOf(builder.mPublishedMillis, mSize);
+        mText = Arrays.copyOf(builder.mText, builder.mTextLength);
+        mTextStarts = Arrays.copyOf(builder.mTextStarts, mSize * TEXT_COLUMNS);
+        mTextLengths = Arrays.copyOf(builder.mTextLengths, mSize * TEXT_COLUMNS);
+    }
+
+    /**
+     * Returns the given articles as a batch, or the list itself if it already is one.
+     */
+    static ArticleBatch of(List<News> articles) {
+
+        if (articles instanceof ArticleBatch) {
+            return (ArticleBatch) articles;
+        }
+
+        Builder builder = new Builder(articles.size());
+
+        for (News article : articles) {
+            builder.add(article);
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns a {@link News} holding the article's values, built on the first call for the
+     * article. Prefer a {@link Cursor} to read many articles.
+     */
+    @Override
+    public News get(int index) {
+
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+
+        News[] articles = mArticles;
+
+        if (articles == null) {
+            articles = new News[mSize];
+            mArticles = articles;
+        }
+
+        News article = articles[index];
+
+        if (article == null) {
+            article = new News(text(index, TEXT_ID), dictionary(mSectionIds, mSectionIdCodes[index]),
+                    dictionary(mSections, mSectionCodes[index]), text(index, TEXT_DATE),
+                    mPublishedMillis[index], text(index, TEXT_TITLE), text(index, TEXT_URL),
+                    dictionary(mAuthors, mAuthorCodes[index]), text(index, TEXT_TRAIL_TEXT), text(index, TEXT_THUMBNAIL));
+            articles[index] = article;
+        }
+
+        return article;
+    }
+
+    /**
+     * Returns the number of distinct authors of the batch, the bound of
+     * {@link Cursor#getAuthorCode()}.
+     */
+    int authorCount() {
+        return mAuthors.length;
+    }
+
+    /**
+     * Returns a new cursor positioned before the first article.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private static String dictionary(String[] values, int code) {
+        return code == NULL ? null : values[code];
+    }
+
+    private String text(int index, int column) {
+
+        int slot = index * TEXT_COLUMNS + column;
+        int start = mTextStarts[slot];
+
+        if (start >= 0) {
+
+            String[] decoded = mDecoded;
+
+            if (decoded == null) {
+                decoded = new String[mSize * TEXT_COLUMNS];
+                mDecoded = decoded;
+            }
+
+            String value = decoded[slot];
+
+            if (value == null) {
+                value = new String(mText, start, mTextLengths[slot], UTF_8);
+                decoded[slot] = value;
+            }
+
+            return value;
+        }
+
+        int code = -start - 2;
+
+        return code == NULL ? null : COMMON_TEXTS[code];
+    }
+
+    /**
+     * Flyweight view of one article of the batch at a time. Dictionary-encoded and common
+     * values are returned without allocating, the other text values are decoded on their
+     * first access and shared with the later ones. The dictionary codes are exposed as well,
+     * so that values derived from them can be computed once per code. Not thread-safe.
+     */
+    final class Cursor {
+
+        private int mIndex = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves to the next article, returns false after the last one.
+         */
+        boolean moveToNext() {
+            if (mIndex < mSize) {
+                mIndex++;
+            }
+            return mIndex < mSize;
+        }
+
+        /**
+         * Moves to the given article.
+         */
+        void moveTo(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+            }
+            mIndex = index;
+        }
+
+        String getId() {
+            return text(mIndex, TEXT_ID);
+        }
+
+        String getSectionId() {
+            return dictionary(mSectionIds, mSectionIdCodes[mIndex]);
+        }
+
+        String getSectionName() {
+            return dictionary(mSections, mSectionCodes[mIndex]);
+        }
+
+        String getDatePublished() {
+            return text(mIndex, TEXT_DATE);
+        }
+
+        long getPublishedMillis() {
+            return mPublishedMillis[mIndex];
+        }
+
+        String getArticleTitle() {
+            return text(mIndex, TEXT_TITLE);
+        }
+
+        String getArticleUrl() {
+            return text(mIndex, TEXT_URL);
+        }
+
+        String getArticleAuthor() {
+            return dictionary(mAuthors, mAuthorCodes[mIndex]);
+        }
+
+        /**
+         * Returns the code of the author, -1 if there is none. Articles of the batch with the
+         * same author have the same code, below {@link #authorCount()}.
+         */
+        int getAuthorCode() {
+            return mAuthorCodes[mIndex];
+        }
+
+        String getTrailText() {
+            return text(mIndex, TEXT_TRAIL_TEXT);
+        }
+
+        String getThumbnailUrl() {
+            return text(mIndex, TEXT_THUMBNAIL);
+        }
+    }
+
+    /**
+     * Accumulates articles, e.g. while a response is being parsed, and builds the batch. The
+     * parser appends every article as soon as it is read, so a response is never held as a
+     * list of {@link News} on top of its columns.
+     */
+    static final class Builder {
+
+        private int mSize;
+
+        private final List<String> mSectionIds = new ArrayList<>();
+
+        private final Map<String, Integer> mSectionIdDictionary = new HashMap<>();
+
+        private int[] mSectionIdCodes;
+
+        private final List<String> mSections = new ArrayList<>();
+
+        private final Map<String, Integer> mSectionDictionary = new HashMap<>();
+
+        private int[] mSectionCodes;
+
+        private final List<String> mAuthors = new ArrayList<>();
+
+        private final Map<String, Integer> mAuthorDictionary = new HashMap<>();
+
+        private int[] mAuthorCodes;
+
+        private long[] mPublishedMillis;
+
+        private byte[] mText;
+
+        private int mTextLength;
+
+        private int[] mTextStarts;
+
+        private int[] mTextLengths;
+
+        /**
+         * @param expectedSize number of articles expected, e.g. the page size
+         */
+        Builder(int expectedSize) {
+            int capacity = Math.max(1, expectedSize);
+            mSectionIdCodes = new int[capacity];
+            mSectionCodes = new int[capacity];
+            mAuthorCodes = new int[capacity];
+            mPublishedMillis = new long[capacity];
+            mTextStarts = new int[capacity * TEXT_COLUMNS];
+            mTextLengths = new int[capacity * TEXT_COLUMNS];
+            mText = new byte[capacity * 256];
+        }
+
+        /**
+         * Appends the values of the given article, which can be dropped right away.
+         */
+        Builder add(News article) {
+            return add(article.getId(), article.getSectionId(), article.getSectionName(),
+                    article.getDatePublished(), article.getPublishedMillis(), article.getArticleTitle(),
+                    article.getArticleUrl(), article.getArticleAuthor(), article.getTrailText(),
+                    article.getThumbnailUrl());
+        }
+
+        Builder add(String id, String sectionId, String sectionName, String datePublished, long publishedMillis,
+                    String articleTitle, String articleUrl, String articleAuthor, String trailText,
+                    String thumbnailUrl) {
+
+            if (mSize == mSectionCodes.length) {
+                grow();
+            }
+
+            mSectionIdCodes[mSize] = encode(mSectionIdDictionary, mSectionIds, sectionId);
+            mSectionCodes[mSize] = encode(mSectionDictionary, mSections, sectionName);
+            mAuthorCodes[mSize] = encode(mAuthorDictionary, mAuthors, articleAuthor);
+            mPublishedMillis[mSize] = publishedMillis;
+
+            int slot = mSize * TEXT_COLUMNS;
+            appendText(slot + TEXT_ID, id);
+            appendText(slot + TEXT_DATE, datePublished);
+            appendText(slot + TEXT_TITLE, articleTitle);
+            appendText(slot + TEXT_URL, articleUrl);
+            appendText(slot + TEXT_TRAIL_TEXT, trailText);
+            appendText(slot + TEXT_THUMBNAIL, thumbnailUrl);
+
+            mSize++;
+
+            return this;
+        }
+
+        /**
+         * Returns the number of articles added so far
+         */
+        int size() {
+            return mSize;
+        }
+
+        /**
+         * Returns a batch of the articles added so far. More can be added to the builder
+         * afterwards, the batch keeps its own copy of the columns.
+         */
+        ArticleBatch build() {
+            return new ArticleBatch(this);
+        }
+
+        private void grow() {
+            int capacity = mSectionCodes.length * 2;
+            mSectionIdCodes = Arrays.copyOf(mSectionIdCodes, capacity);
+            mSectionCodes = Arrays.copyOf(mSectionCodes, capacity);
+            mAuthorCodes = Arrays.copyOf(mAuthorCodes, capacity);
+            mPublishedMillis = Arrays.copyOf(mPublishedMillis, capacity);
+            mTextStarts = Arrays.copyOf(mTextStarts, capacity * TEXT_COLUMNS);
+            mTextLengths = Arrays.copyOf(mTextLengths, capacity * TEXT_COLUMNS);
+        }
+
+        private static int encode(Map<String, Integer> dictionary, List<String> values, String value) {
+
+            if (value == null) {
+                return NULL;
+            }
+
+            Integer code = dictionary.get(value);
+
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                dictionary.put(value, code);
+            }
+
+            return code;
+        }
+
+        private void appendText(int slot, String value) {
+
+            int code = value == null ? NULL : commonText(value);
+
+            if (code != NULL || value == null) {
+                mTextStarts[slot] = -code - 2;
+                return;
+            }
+
+            byte[] bytes = value.getBytes(UTF_8);
+
+            if (mTextLength + bytes.length > mText.length) {
+                mText = Arrays.copyOf(mText, Math.max(mText.length * 2, mTextLength + bytes.length));
+            }
+
+            System.arraycopy(bytes, 0, mText, mTextLength, bytes.length);
+            mTextStarts[slot] = mTextLength;
+            mTextLengths[slot] = bytes.length;
+            mTextLength += bytes.length;
+        }
+
+        private static int commonText(String value) {
+
+            for (int i = 0; i < COMMON_TEXTS.length; i++) {
+                if (COMMON_TEXTS[i].equals(value)) {
+                    return i;
+                }
+            }
+
+            return NULL;
+        }
+    }
+}
@@ -4,51 +4,120 @@ import android.app.LoaderManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.Loader;
-import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
-import android.preference.PreferenceManager;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<News>> {
+public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<NewsItem>> {
 
     private static final String LOG_TAG = MainActivity.class.getName();
 
     /**
-     * URL for news data from the the Guardian dataset
+     * Constant value for the article loader ID
      */
-    private static final String GUARDIAN_REQUEST_URL =
-            "https://content.guardianapis.com/search";
+    private static final int NEWS_LOADER_ID = 1;
 
     /**
-     * Constant value for the article loader ID
+     * Constant value for the loader fetching further result pages
      */
-    private static final int NEWS_LOADER_ID = 1;
+    private static final int PAGE_LOADER_ID = 2;
+
+    /**
+     * Bundle key of the result page requested from the loader
+     */
+    private static final String ARG_PAGE = "page";
+
+    /**
+     * Bundle key telling the loader the user asked for a refresh
+     */
+    private static final String ARG_FORCE_REFRESH = "force_refresh";
+
+    /**
+     * Whether cached articles are shown while the loader refreshes them
+     */
+    private static final boolean STALE_WHILE_REVALIDATE = true;
 
     /**
-     * prefix used in the construction of sections string
+     * Keys of the saved instance state
      */
-    private static final String SECTION_SEPARATOR = "|";
+    private static final String STATE_FIRST_POSITION = "first_position";
+    private static final String STATE_FIRST_OFFSET = "first_offset";
+    private static final String STATE_SAVED_AT = "saved_at";
+    private static final String STATE_FILTER = "filter";
 
     /**
      * Adapter for the list of articles
      */
     private NewsAdapter mAdapter;
 
+    /**
+     * Articles currently submitted to the adapter
+     */
+    private List<NewsItem> mArticles = Collections.emptyList();
+
+    /**
+     * Tracks the result pages held by the adapter
+     */
+    private final NewsPager mPager = new NewsPager();
+
+    /**
+     * Index of the loaded articles narrowing the list as the user types
+     */
+    private final NewsFilter mFilter = new NewsFilter();
+
+    /**
+     * Keeps the text of the articles close to the visible rows only
+     */
+    private NewsWindow mWindow;
+
+    /**
+     * Range of rows whose thumbnails and text layouts have already been prefetched, reset to
+     * the visible rows when a new list is shown or the scroll changes direction
+     */
+    private int mFirstPrefetched;
+    private int mLastPrefetched;
+
+    /**
+     * Direction of the last scroll, 1 down, -1 up, 0 not scrolled since the list was shown
+     */
+    private int mPrefetchDirection;
+
+    /**
+     * True while the first page of a response is still arriving in batches, no further page is
+     * fetched until it is complete
+     */
+    private boolean mFirstPagePending;
+
+    /**
+     * Text typed in the filter box, empty when the whole list is shown
+     */
+    private String mFilterQuery = "";
+
+    /**
+     * Number of results requested per page
+     */
+    private int mPageSize = NewsQuery.DEFAULT_PAGE_SIZE;
+
     /**
      * TextView that is displayed when the list is empty
      */
@@ -60,28 +129,77 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     private SwipeRefreshLayout swipeRefreshLayout;
 
     /**
-     * URL constructor
+     * RecyclerView showing the articles
+     */
+    private RecyclerView mArticleListView;
+
+    /**
+     * Whether the list restored from the saved state is still fresh, so that the next
+     * {@link #onResume()} does not replace it with the first page
      */
-    Uri.Builder uriBuilder;
+    private boolean mSkipNextRefresh;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        NewsStartup.mark(NewsStartup.ACTIVITY_CREATED);
         setContentView(R.layout.activity_main);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView articleListView = findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        final RecyclerView articleListView = findViewById(R.id.list);
+        mArticleListView = articleListView;
 
         mEmptyList = findViewById(R.id.no_content);
-        articleListView.setEmptyView(mEmptyList);
 
-        // Create a new adapter that takes an empty list of articles as input
-        mAdapter = new NewsAdapter(this, new ArrayList<News>());
+        if (savedInstanceState != null) {
+            mFilterQuery = savedInstanceState.getString(STATE_FILTER, "");
+        }
+
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        articleListView.setLayoutManager(layoutManager);
+        articleListView.addItemDecoration(new NewsDividerDecoration(
+                getResources().getDrawable(R.drawable.divider),
+                getResources().getDimensionPixelSize(R.dimen.double_standard)));
+
+        // Create a new adapter which sends an intent to a web browser when an article is clicked,
+        // to open a website with more information about the selected article.
+        mAdapter = new NewsAdapter(this, new NewsAdapter.OnArticleClickListener() {
+            @Override
+            public void onArticleClick(NewsItem currentArticle) {
 
-        // Set the adapter on the {@link ListView}
+                // The text of the row is still being read back from the store
+                if (currentArticle.isStub()) {
+                    return;
+                }
+
+                // Convert the String URL into a URI object (to pass into the Intent constructor)
+                Uri articleUri = Uri.parse(currentArticle.getArticleUrl());
+
+                // Create a new intent to view the article URI
+                Intent websiteIntent = new Intent(Intent.ACTION_VIEW, articleUri);
+
+                // Send the intent to launch a new activity
+                startActivity(websiteIntent);
+
+            }
+        });
+
+        // Set the adapter on the {@link RecyclerView}
         // so the list can be populated in the user interface
         articleListView.setAdapter(mAdapter);
 
+        // Rebind the rows whose articles got their text back, and index the text of the ones
+        // the filter only knew as stubs
+        mWindow = NewsWindow.create(this, new NewsWindow.Listener() {
+            @Override
+            public void onArticlesRehydrated(List<NewsItem> shown, int first, int last) {
+                mFilter.index(mArticles);
+                if (mAdapter.isShowing(shown)) {
+                    mAdapter.notifyItemRangeChanged(first, last - first + 1);
+                }
+            }
+        });
+
         // Set the refresher for article list
         swipeRefreshLayout = findViewById(R.id.swipe_refresh_layout);
 
@@ -99,199 +217,377 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             }
         });
 
-        // Set an item click listener on the ListView, which sends an intent to a web browser
-        // to open a website with more information about the selected article.
-        articleListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Fetch the neighbouring result page when the user scrolls close to either end of the list
+        articleListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current article that was clicked on
-                News currentArticle = mAdapter.getItem(position);
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+
+                int totalItemCount = mArticles.size();
 
-                if (currentArticle != null) {
+                if (totalItemCount == 0) {
+                    return;
+                }
+
+                int firstVisibleItem = layoutManager.findFirstVisibleItemPosition();
+                int visibleItemCount = layoutManager.getChildCount();
+
+                mWindow.onScrolled(firstVisibleItem, firstVisibleItem + visibleItemCount - 1);
 
-                    // Convert the String URL into a URI object (to pass into the Intent constructor)
-                    Uri articleUri = Uri.parse(currentArticle.getArticleUrl());
+                // Warm the thumbnails and text layouts of the next screenful in the scroll direction
+                int direction = Integer.signum(dy);
 
-                    // Create a new intent to view the article URI
-                    Intent websiteIntent = new Intent(Intent.ACTION_VIEW, articleUri);
+                if (direction != 0 && direction != mPrefetchDirection) {
+                    mPrefetchDirection = direction;
+                    resetPrefetched(firstVisibleItem, firstVisibleItem + visibleItemCount - 1);
+                }
 
-                    // Send the intent to launch a new activity
-                    startActivity(websiteIntent);
+                if (dy > 0) {
+                    int next = firstVisibleItem + visibleItemCount;
+                    if (next > mLastPrefetched) {
+                        mLastPrefetched = next + visibleItemCount - 1;
+                        mAdapter.prefetch(next, mLastPrefetched);
+                    }
+                } else if (dy < 0) {
+                    int previous = firstVisibleItem - 1;
+                    if (previous >= 0 && previous < mFirstPrefetched) {
+                        mFirstPrefetched = previous - visibleItemCount + 1;
+                        mAdapter.prefetch(mFirstPrefetched, previous);
+                    }
+                }
 
+                // The filtered list only holds the loaded articles
+                if (!mFilterQuery.isEmpty() || mFirstPagePending) {
+                    return;
+                }
+
+                int page = mPager.pageToPrefetch(firstVisibleItem, visibleItemCount, totalItemCount);
+
+                if (page != NewsPager.NO_PAGE) {
+                    Bundle args = new Bundle();
+                    args.putInt(ARG_PAGE, page);
+                    getLoaderManager().restartLoader(PAGE_LOADER_ID, args, MainActivity.this);
                 }
             }
         });
 
-        // Get a reference to the ConnectivityManager to check state of network connectivity
-        ConnectivityManager cm = (ConnectivityManager)
-                getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Record the first frame of a cold start
+        if (!NewsStartup.isMarked(NewsStartup.FIRST_FRAME)) {
+            getWindow().getDecorView().getViewTreeObserver().addOnPreDrawListener(
+                    new ViewTreeObserver.OnPreDrawListener() {
+                        @Override
+                        public boolean onPreDraw() {
+                            getWindow().getDecorView().getViewTreeObserver().removeOnPreDrawListener(this);
+                            NewsStartup.mark(NewsStartup.FIRST_FRAME);
+                            return true;
+                        }
+                    });
+        }
+
+        // After the process was killed in the background, bring back the whole list with its
+        // pages and scroll position at once
+        if (savedInstanceState != null && restoreArticles(savedInstanceState, layoutManager)) {
+            findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+            return;
+        }
 
-        if (cm != null) {
+        // Bind the last list shown on the first frame, the loader replaces it when it finishes
+        List<NewsItem> snapshot = NewsSnapshot.read(this);
+
+        if (!snapshot.isEmpty()) {
+            findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+            setArticles(snapshot, NewsStartup.FIRST_CACHED_ROW);
+        }
 
-            // Get details on the currently active default data network
-            NetworkInfo networkInfo = cm.getActiveNetworkInfo();
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        LoaderManager lm = getLoaderManager();
+
+        // Initialize the loader. Pass in the int ID constant defined above and pass in null for
+        // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
+        // because this activity implements the LoaderCallbacks interface).
+        // Without a network connection the loader still answers keyword searches from the
+        // local store and shows the cached articles.
+        lm.initLoader(NEWS_LOADER_ID, null, this);
+    }
 
-            // If there is a network connection, fetch data
-            if (networkInfo != null && networkInfo.isConnected()) {
-                // Get a reference to the LoaderManager, in order to interact with loaders.
-                LoaderManager lm = getLoaderManager();
+    // Binds the list saved by onSaveInstanceState, returns false if there is none
+    private boolean restoreArticles(Bundle savedInstanceState, LinearLayoutManager layoutManager) {
 
-                // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-                // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-                // because this activity implements the LoaderCallbacks interface).
-                lm.initLoader(NEWS_LOADER_ID, null, this);
-            } else {
-                // Otherwise, display error
-                // First, hide loading indicator so error message will be visible
-                View loadingIndicator = findViewById(R.id.loading_indicator);
-                loadingIndicator.setVisibility(View.GONE);
+        List<NewsItem> articles = NewsSnapshot.restore(this, savedInstanceState);
 
-                // Update empty state with no connection error message
-                mEmptyList.setText(getResources().getString(R.string.no_connection));
-            }
+        if (articles.isEmpty() || !mPager.onRestoreInstanceState(savedInstanceState)) {
+            return false;
         }
+
+        // Loaders kept across a configuration change would deliver the first page again
+        LoaderManager lm = getLoaderManager();
+        lm.destroyLoader(PAGE_LOADER_ID);
+        lm.destroyLoader(NEWS_LOADER_ID);
+
+        // The first list submitted to the adapter is bound without diffing, so the saved
+        // position can be restored right away
+        setArticles(articles, NewsStartup.FIRST_CACHED_ROW);
+        layoutManager.scrollToPositionWithOffset(
+                savedInstanceState.getInt(STATE_FIRST_POSITION, 0),
+                savedInstanceState.getInt(STATE_FIRST_OFFSET, 0));
+
+        long ttl = TimeUnit.SECONDS.toMillis(getResources().getInteger(R.integer.freshness_ttl_seconds));
+        long age = System.currentTimeMillis() - savedInstanceState.getLong(STATE_SAVED_AT);
+
+        mSkipNextRefresh = age >= 0 && age < ttl;
+
+        return true;
     }
 
     @Override
-    public Loader<List<News>> onCreateLoader(int i, Bundle bundle) {
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        if (mArticles.isEmpty()) {
+            return;
+        }
 
-        Set<String> sectionValues = sharedPrefs.getStringSet(getString(R.string.settings_section_key), null);
+        LinearLayoutManager layoutManager = (LinearLayoutManager) mArticleListView.getLayoutManager();
+        int position = layoutManager.findFirstVisibleItemPosition();
+        View first = layoutManager.findViewByPosition(position);
 
-        String sections = "";
+        outState.putString(STATE_FILTER, mFilterQuery);
 
-        if (sectionValues != null) {
+        // Positions in a filtered list do not match the restored list
+        if (mFilterQuery.isEmpty()) {
+            outState.putInt(STATE_FIRST_POSITION, Math.max(position, 0));
+            outState.putInt(STATE_FIRST_OFFSET, first == null ? 0 : first.getTop() - mArticleListView.getPaddingTop());
+        }
+        outState.putLong(STATE_SAVED_AT, System.currentTimeMillis());
 
-            for (String section : sectionValues) {
+        mPager.onSaveInstanceState(outState);
+        NewsSnapshot.save(this, outState, mArticles);
+    }
 
-                String temp = sections.concat(SECTION_SEPARATOR).concat(section);
+    // Returns whether there is a network connection
+    private boolean isConnected() {
 
-                StringBuilder sb = new StringBuilder(temp);
+        // Get a reference to the ConnectivityManager to check state of network connectivity
+        ConnectivityManager cm = (ConnectivityManager)
+                getSystemService(Context.CONNECTIVITY_SERVICE);
 
-                int index = sb.indexOf(SECTION_SEPARATOR);
+        if (cm == null) {
+            return false;
+        }
 
-                if (index < 1) {
+        // Get details on the currently active default data network
+        NetworkInfo networkInfo = cm.getActiveNetworkInfo();
 
-                    sb.delete(index, index + SECTION_SEPARATOR.length());
+        return networkInfo != null && networkInfo.isConnected();
+    }
 
-                }
+    @Override
+    public Loader<List<NewsItem>> onCreateLoader(int i, Bundle bundle) {
 
-                sections = sb.toString();
+        int page = bundle == null ? 1 : bundle.getInt(ARG_PAGE, 1);
+        boolean forceRefresh = bundle != null && bundle.getBoolean(ARG_FORCE_REFRESH, false);
 
-            }
-        }
+        NewsQuery query = NewsQuery.read(this);
 
-        String fromDate = sharedPrefs.getString(
-                getString(R.string.settings_from_date_key),
-                getString(R.string.settings_from_date_default));
+        mPageSize = query.getPageSize();
 
-        String toDate = sharedPrefs.getString(
-                getString(R.string.settings_to_date_key),
-                getString(R.string.settings_to_date_default));
+        // Log for checking if constructed URL is ok.
+        Log.v(LOG_TAG, getResources().getString(R.string.built_url) + query.urls(page));
 
-        String keywordSearch = sharedPrefs.getString(
-                getString(R.string.settings_keyword_search_key),
-                getString(R.string.settings_keyword_search_default));
+        // Create a new loader for the query
+        // Further pages are appended to the list, so they are never served stale
+        return new NewsLoader(this, query, page, STALE_WHILE_REVALIDATE && page == 1, forceRefresh);
 
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default));
+    }
 
-        String pageSize = sharedPrefs.getString(
-                getString(R.string.settings_page_size_key),
-                getString(R.string.settings_page_size_default));
+    @Override
+    public void onLoadFinished(Loader<List<NewsItem>> loader, List<NewsItem> articles) {
 
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
-        uriBuilder = baseUri.buildUpon();
+        if (loader.getId() == PAGE_LOADER_ID) {
+            onPageLoadFinished(((NewsLoader) loader).getPage(), articles);
+            return;
+        }
 
-        uriBuilder.appendQueryParameter("format", "json");
-        uriBuilder.appendQueryParameter("use-date", "published");
-        uriBuilder.appendQueryParameter("show-tags", "contributor");
-        uriBuilder.appendQueryParameter("show-fields", "all");
-        uriBuilder.appendQueryParameter("api-key", "6564320b-a05d-4650-9396-17c26f5f3582");
+        // Hide loading indicator because the data has been loaded
+        View loadingIndicator = findViewById(R.id.loading_indicator);
+        loadingIndicator.setVisibility(View.GONE);
 
-        if (pageSize.isEmpty()) {
+        // Set empty state text to display "No articles found.", or the connection error
+        // if nothing was stored locally either
+        mEmptyList.setText(getResources().getString(isConnected() ? R.string.no_articles : R.string.no_connection));
 
-            emptyUri();
+        // Any page still being fetched belongs to the previous list
+        getLoaderManager().destroyLoader(PAGE_LOADER_ID);
 
-        } else {
+        if (articles == null) {
+            articles = Collections.emptyList();
+        }
 
-            uriBuilder.appendQueryParameter("page-size", pageSize);
+        NewsLoader newsLoader = (NewsLoader) loader;
+        boolean fresh = !newsLoader.isInterim(articles);
 
+        // Keep the loaded list for the next cold start, an empty result (e.g. offline) does
+        // not replace it
+        if (fresh && !articles.isEmpty()) {
+            NewsSnapshot.writeAsync(this, articles);
         }
 
-        if (sections.isEmpty()) {
+        // The first batches of a response are neither cached nor the complete fresh list
+        int milestone = fresh ? NewsStartup.FIRST_FRESH_ROW
+                : newsLoader.isNetworkInterim(articles) ? NewsStartup.FIRST_NETWORK_ROW
+                : NewsStartup.FIRST_CACHED_ROW;
 
-            emptyUri();
+        // Replace the previous article data. The adapter diffs the lists on a background
+        // thread and only rebinds the rows that changed.
+        setArticles(articles, milestone);
 
-        } else {
+        // A batch is only part of the first page, counting it would mark its partial size as
+        // the last page
+        mFirstPagePending = newsLoader.isNetworkInterim(articles);
 
-            uriBuilder.appendQueryParameter("section", sections);
+        if (!mFirstPagePending) {
+            mPager.reset(mArticles.size(), mPageSize);
+        }
+    }
+
+    // Adds a further result page to the list, dropping the page furthest away if too many are held
+    private void onPageLoadFinished(int page, List<NewsItem> articles) {
 
+        if (mPager.isStale(page)) {
+            return;
         }
 
-        if (fromDate.isEmpty()) {
+        List<NewsItem> updated = new ArrayList<>(mArticles.size() + articles.size());
 
-            emptyUri();
+        if (mPager.isAppend(page)) {
 
-        } else {
+            int dropped = mPager.onPageAppended(articles.size());
 
-            uriBuilder.appendQueryParameter("from-date", fromDate);
+            updated.addAll(mArticles.subList(dropped, mArticles.size()));
 
-        }
+            // Local search matches merged into the first page may show up again in later pages
+            Set<String> ids = new HashSet<>(updated.size() * 2);
 
-        if (toDate.isEmpty()) {
+            for (NewsItem article : updated) {
+                ids.add(article.getId());
+            }
 
-            emptyUri();
+            for (NewsItem article : articles) {
+                if (ids.add(article.getId())) {
+                    updated.add(article);
+                }
+            }
+
+        } else if (articles.isEmpty()) {
+
+            mPager.onPageFailed();
+            return;
 
         } else {
 
-            uriBuilder.appendQueryParameter("to-date", toDate);
+            int dropped = mPager.onPagePrepended(articles.size());
 
+            updated.addAll(articles);
+            updated.addAll(mArticles.subList(0, mArticles.size() - dropped));
         }
 
-        uriBuilder.appendQueryParameter("q", keywordSearch);
-        uriBuilder.appendQueryParameter("order-by", orderBy);
-
-        // Log for checking if constructed URL is ok.
-        Log.v(LOG_TAG, getResources().getString(R.string.built_url) + uriBuilder);
+        // The layout manager keeps the visible rows in place while rows are inserted or
+        // removed around them
+        setArticles(updated, NewsStartup.FIRST_FRESH_ROW);
+    }
 
-        // Create a new loader for the given URL
-        return new NewsLoader(this, uriBuilder.toString());
+    // Replaces the loaded articles with the window's copies of them, indexing the new ones for
+    // the filter before the ones away from the screen are shrunk. The startup milestone is
+    // recorded once the rows are drawn.
+    private void setArticles(List<NewsItem> articles, int milestone) {
+        mArticles = mWindow.own(articles);
+        mFilter.index(mArticles);
+        showArticles();
 
+        if (mFilterQuery.isEmpty()) {
+            traceFirstRows(mArticles, milestone);
+        }
     }
 
-    private void emptyUri() {
+    // Narrows the list to the articles matching the typed text
+    private void applyFilter(String query) {
 
-        uriBuilder.appendQueryParameter("", "");
+        if (query.equals(mFilterQuery)) {
+            return;
+        }
 
+        mFilterQuery = query;
+        showArticles();
+        mArticleListView.scrollToPosition(0);
     }
 
-    @Override
-    public void onLoadFinished(Loader<List<News>> loader, List<News> articles) {
+    // Submits the loaded articles matching the filter to the adapter and updates the empty state
+    private void showArticles() {
 
-        // Hide loading indicator because the data has been loaded
-        View loadingIndicator = findViewById(R.id.loading_indicator);
-        loadingIndicator.setVisibility(View.GONE);
+        List<NewsItem> shown = mFilter.filter(mArticles, mFilterQuery);
 
-        // Set empty state text to display "No articles found."
-        mEmptyList.setText(getResources().getString(R.string.no_articles));
+        mAdapter.submitList(shown);
 
-        // Clear the adapter of previous article data
-        mAdapter.clear();
+        LinearLayoutManager layoutManager = (LinearLayoutManager) mArticleListView.getLayoutManager();
+        mWindow.setArticles(mArticles, shown, layoutManager.findFirstVisibleItemPosition(),
+                layoutManager.findLastVisibleItemPosition());
 
-        // If there is a valid list of {@link News}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (articles != null && !articles.isEmpty()) {
-            mAdapter.addAll(articles);
+        // The rows of the previous list around the visible ones may not be the new ones
+        mPrefetchDirection = 0;
+        resetPrefetched(layoutManager.findFirstVisibleItemPosition(), layoutManager.findLastVisibleItemPosition());
+
+        if (shown.isEmpty() && !mArticles.isEmpty()) {
+            mEmptyList.setText(R.string.no_filter_matches);
         }
+
+        mEmptyList.setVisibility(shown.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    // Only the given visible rows are considered prefetched, the next scroll warms the rows
+    // following them
+    private void resetPrefetched(int firstVisible, int lastVisible) {
+        mFirstPrefetched = firstVisible;
+        mLastPrefetched = lastVisible;
+    }
+
+    // Records the first frame showing cached, partially read or freshly loaded rows during a
+    // cold start
+    private void traceFirstRows(final List<NewsItem> articles, final int milestone) {
+
+        if (articles.isEmpty() || NewsStartup.isMarked(milestone)) {
+            return;
+        }
+
+        mArticleListView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+
+                // Replaced before it was shown
+                if (mArticles != articles) {
+                    mArticleListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    return true;
+                }
+
+                // The adapter diffs on a background thread, so the list shows up a few frames later
+                if (mAdapter.isShowing(articles) && mArticleListView.getChildCount() > 0) {
+                    mArticleListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    NewsStartup.mark(milestone);
+                }
+
+                return true;
+            }
+        });
     }
 
     @Override
-    public void onLoaderReset(Loader<List<News>> loader) {
+    public void onLoaderReset(Loader<List<NewsItem>> loader) {
+        // A page loader being replaced leaves the rest of the list in place
+        if (loader.getId() == PAGE_LOADER_ID) {
+            return;
+        }
+
         // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+        setArticles(Collections.<NewsItem>emptyList(), NewsStartup.FIRST_CACHED_ROW);
     }
 
     @Override
@@ -301,14 +597,25 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         // Get a reference to the LoaderManager, in order to interact with loaders.
         LoaderManager loaderManager = getLoaderManager();
 
-        // Restart the loader.
-        loaderManager.restartLoader(NEWS_LOADER_ID, null, this);
+        // Restart the loader. Results fetched less than the freshness TTL ago are reused, so
+        // coming back from the settings or another app does not download them again.
+        // A fresh list restored from the saved state keeps its pages and position instead.
+        if (mSkipNextRefresh) {
+            mSkipNextRefresh = false;
+        } else {
+            loaderManager.restartLoader(NEWS_LOADER_ID, null, this);
+        }
+
+        // Keep the saved query refreshed in the background, the settings may have changed
+        NewsSync.schedule(this);
     }
 
-    // This method restarts loader (refreshing articles)
+    // This method restarts loader (refreshing articles), bypassing the results still fresh
     private void restartLoader() {
 
-        getLoaderManager().restartLoader(1, null, this);
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_FORCE_REFRESH, true);
+        getLoaderManager().restartLoader(NEWS_LOADER_ID, args, this);
 
     }
 
@@ -316,6 +623,34 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // Filter box narrowing the loaded articles as the user types, without fetching
+        MenuItem filterItem = menu.findItem(R.id.menu_filter);
+        final SearchView searchView = (SearchView) filterItem.getActionView();
+        searchView.setQueryHint(getString(R.string.filter_hint));
+
+        if (!mFilterQuery.isEmpty()) {
+            String query = mFilterQuery;
+            filterItem.expandActionView();
+            searchView.setQuery(query, false);
+        }
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                applyFilter(newText);
+                return true;
+            }
+        });
+
+        menu.findItem(R.id.menu_startup_trace).setVisible(BuildConfig.DEBUG);
+        menu.findItem(R.id.menu_metrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -330,6 +665,22 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
             return true;
         }
 
+        // debug builds only, timings of the cold start
+        if (id == R.id.menu_startup_trace) {
+            new AlertDialog.Builder(this)
+                    .setTitle(R.string.menu_startup_trace)
+                    .setMessage(NewsStartup.report())
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+            return true;
+        }
+
+        // debug builds only, fetch and bind metrics
+        if (id == R.id.menu_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
+        }
+
         // toolbar refresh icon for restarting loader (for someone with old phone for example)
         if (id == R.id.menu_refresh) {
             restartLoader();
@@ -0,0 +1,120 @@
+package com.example.android.newsapp;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Debug screen showing the {@link NewsMetrics} and the {@link NewsStartup} trace, with an
+ * action exporting the metrics as JSON.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = MetricsActivity.class.getSimpleName();
+
+    /**
+     * Name of the exported dump, inside the app's files dir
+     */
+    private static final String DUMP_FILE_NAME = "metrics.json";
+
+    private TextView mReport;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.metrics_activity);
+        mReport = findViewById(R.id.metrics_report);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showReport();
+    }
+
+    private void showReport() {
+        mReport.setText(NewsStartup.report() + "\n\n" + NewsMetrics.report());
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+
+        if (id == R.id.menu_metrics_export) {
+            export();
+            return true;
+        }
+
+        if (id == R.id.menu_metrics_reset) {
+            NewsMetrics.reset();
+            showReport();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    // Saves the JSON dump and hands it to any app able to share text
+    private void export() {
+
+        String json;
+
+        try {
+
+            json = NewsMetrics.toJson().toString(2);
+
+        } catch (JSONException e) {
+
+            Log.e(LOG_TAG, "Metrics dumping problem", e);
+            return;
+
+        }
+
+        File file = new File(getFilesDir(), DUMP_FILE_NAME);
+        OutputStream out = null;
+
+        try {
+
+            out = new FileOutputStream(file);
+            out.write(json.getBytes(Charset.forName("UTF-8")));
+            Log.v(LOG_TAG, "Metrics dumped to " + file);
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Metrics writing problem", e);
+
+        } finally {
+
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Closing problem", e);
+                }
+            }
+        }
+
+        Intent share = new Intent(Intent.ACTION_SEND);
+        share.setType("application/json");
+        share.putExtra(Intent.EXTRA_TEXT, json);
+        startActivity(Intent.createChooser(share, getString(R.string.menu_metrics_export)));
+    }
+}
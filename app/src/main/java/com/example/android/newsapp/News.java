@@ -15,14 +15,20 @@ public class News implements Parcelable {
 
         @Override
         public News[] newArray(int size) {
-            return new News[0];
+            return new News[size];
         }
     };
 
+    private final String id;
+
+    private final String sectionId;
+
     private final String sectionName;
 
     private final String datePublished;
 
+    private final long publishedMillis;
+
     private final String articleTitle;
 
     private final String articleUrl;
@@ -36,18 +42,24 @@ public class News implements Parcelable {
     /**
      * Constructs a new {@link News} object.
      *
+     * @param id            is the Guardian id of the article
+     * @param sectionId     is the Guardian id of the news category, as requested in queries
      * @param sectionName   is the name of the news category
      * @param datePublished is the article's publication date
+     * @param publishedMillis is the article's publication date in epoch milliseconds
      * @param articleTitle  is the article's title
      * @param articleUrl    is the web address of the article
      * @param articleAuthor is the name of the article's author
      * @param trailText     is the name of the sneak peak text
      * @param thumbnailUrl  is the web address of the thumbnail image
      */
-    News(String sectionName, String datePublished, String articleTitle, String articleUrl, String articleAuthor, String trailText, String thumbnailUrl) {
+    News(String id, String sectionId, String sectionName, String datePublished, long publishedMillis, String articleTitle, String articleUrl, String articleAuthor, String trailText, String thumbnailUrl) {
 
+        this.id = id;
+        this.sectionId = sectionId;
         this.sectionName = sectionName;
         this.datePublished = datePublished;
+        this.publishedMillis = publishedMillis;
         this.articleTitle = articleTitle;
         this.articleUrl = articleUrl;
         this.articleAuthor = articleAuthor;
@@ -59,8 +71,11 @@ public class News implements Parcelable {
     //read and set saved values from parcel
     private News(Parcel parcel) {
 
+        id = parcel.readString();
+        sectionId = parcel.readString();
         sectionName = parcel.readString();
         datePublished = parcel.readString();
+        publishedMillis = parcel.readLong();
         articleTitle = parcel.readString();
         articleUrl = parcel.readString();
         articleAuthor = parcel.readString();
@@ -69,6 +84,20 @@ public class News implements Parcelable {
 
     }
 
+    /**
+     * Get the Guardian id of the article (e.g. "world/2018/may/06/some-headline")
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the Guardian id of the article's section (e.g. "world")
+     */
+    public String getSectionId() {
+        return sectionId;
+    }
+
     /**
      * Get the string resource ID for article's section name
      */
@@ -83,6 +112,14 @@ public class News implements Parcelable {
         return datePublished;
     }
 
+    /**
+     * Get the article's date of publication in epoch milliseconds,
+     * or {@link NewsDates#UNKNOWN} if the API's date could not be parsed
+     */
+    public long getPublishedMillis() {
+        return publishedMillis;
+    }
+
     /**
      * Get the string resource ID for the article's title
      */
@@ -121,8 +158,11 @@ public class News implements Parcelable {
     //write the values to parcel for storage
     public void writeToParcel(Parcel dest, int flags) {
 
+        dest.writeString(id);
+        dest.writeString(sectionId);
         dest.writeString(sectionName);
         dest.writeString(datePublished);
+        dest.writeLong(publishedMillis);
         dest.writeString(articleTitle);
         dest.writeString(articleUrl);
         dest.writeString(articleAuthor);
@@ -1,167 +1,262 @@
 package com.example.android.newsapp;
 
-import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Typeface;
-import android.os.Build;
 import android.support.annotation.NonNull;
-import android.util.Log;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.BounceInterpolator;
 import android.view.animation.TranslateAnimation;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * An {@link NewsAdapter} knows how to create a list item layout for each article
- * in the data source (a list of {@link News} objects).
- * These list item layouts will be provided to an adapter view like ListView
- * to be displayed to the user.
+ * in the data source (a list of {@link NewsItem} objects).
+ * These list item layouts will be provided to a RecyclerView to be displayed to the user.
+ * New lists are diffed against the current one on a background thread, so only the rows
+ * that actually changed are rebound. The titles and trail texts of the rows about to be shown
+ * are laid out ahead of time by {@link NewsTextLayouts}.
  */
-class NewsAdapter extends ArrayAdapter<News> {
+class NewsAdapter extends ListAdapter<NewsItem, NewsAdapter.ViewHolder> {
 
-    private static final String TITLE_SEPARATOR = "\\| ";
+    /**
+     * Rows are the same article when their Guardian ids match, and need no rebinding when
+     * all of their text matches as well
+     */
+    private static final DiffUtil.ItemCallback<NewsItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<NewsItem>() {
+        @Override
+        public boolean areItemsTheSame(NewsItem oldItem, NewsItem newItem) {
+            return oldItem.getId().equals(newItem.getId());
+        }
 
-    private static final String FROM_HTML_BR1 = " <br />";
+        @Override
+        public boolean areContentsTheSame(NewsItem oldItem, NewsItem newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
 
-    private static final String FROM_HTML_BR2 = "<br>";
+    /**
+     * Receives clicks on the articles
+     */
+    interface OnArticleClickListener {
+        void onArticleClick(NewsItem article);
+    }
 
-    private static final String FROM_HTML_STRONG1 = "<strong>";
+    private final OnArticleClickListener mListener;
 
-    private static final String FROM_HTML_STRONG2 = "</strong>";
+    private final Picasso mPicasso;
+
+    /**
+     * Layouts of the titles and trail texts built ahead of time
+     */
+    private final NewsTextLayouts mTextLayouts;
+
+    /**
+     * Width the thumbnails are decoded to, the laid out width of the thumbnail views once the
+     * first row has been laid out, 0 before
+     */
+    private int mThumbnailWidth;
 
     /**
      * Constructs a new {@link NewsAdapter}.
      *
      * @param context  of the app
-     * @param articles is the list of articles, which is the data source of the adapter
+     * @param listener receiving clicks on the articles
      */
-    NewsAdapter(Context context, List<News> articles) {
-        super(context, 0, articles);
+    NewsAdapter(Context context, OnArticleClickListener listener) {
+        this(context, listener, true);
     }
 
     /**
-     * Returns a list item view that displays information about the article at the given position
-     * in the list of articles.
+     * Constructs a new {@link NewsAdapter}.
+     *
+     * @param context                of the app
+     * @param listener               receiving clicks on the articles
+     * @param precomputeTextLayouts false to lay out the texts on the main thread when binding
      */
-    @TargetApi(Build.VERSION_CODES.O)
-    @NonNull
-    @Override
-    public View getView(int position, View convertView, @NonNull ViewGroup parent) {
-
-        ViewHolder holder;
-
-        if (convertView == null) {
-
-            convertView = LayoutInflater.from(getContext()).inflate(R.layout.news_list_item, null);
-            holder = new ViewHolder();
-
-            holder.articleTitle = convertView.findViewById(R.id.title);
-            holder.articleCategory = convertView.findViewById(R.id.category);
-            holder.articleAuthor = convertView.findViewById(R.id.author);
-            holder.articleDate = convertView.findViewById(R.id.date);
-            holder.trailText = convertView.findViewById(R.id.trailText);
-            holder.readMore = convertView.findViewById(R.id.readMore);
-            holder.thumbnail = convertView.findViewById(R.id.thumbnail);
-
-            convertView.setTag(holder);
-
-        } else {
-
-            holder = (ViewHolder) convertView.getTag();
-
-        }
+    NewsAdapter(Context context, OnArticleClickListener listener, boolean precomputeTextLayouts) {
+        super(DIFF_CALLBACK);
+        mListener = listener;
+        mPicasso = NewsImages.get(context);
+        mTextLayouts = new NewsTextLayouts(precomputeTextLayouts);
+        setHasStableIds(true);
+    }
 
-        // Find the article at the given position in the list of articles
-        News article = getItem(position);
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getStableId();
+    }
 
-        if (article != null) {
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+
+        View itemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.news_list_item, parent, false);
+        final ViewHolder holder = new ViewHolder(itemView);
+
+        // The thumbnails are decoded to the width the layout actually gives the thumbnail view,
+        // the rows bound before it is known load their thumbnail once they are laid out
+        holder.thumbnail.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View view, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+
+                if (right - left > 0) {
+                    mThumbnailWidth = right - left;
+                }
+
+                if (mThumbnailWidth > 0 && holder.pendingThumbnailUrl != null) {
+                    // Starting the request changes the drawable, which must not happen mid-layout
+                    view.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            String thumbnailUrl = holder.pendingThumbnailUrl;
+                            if (thumbnailUrl != null) {
+                                holder.pendingThumbnailUrl = null;
+                                loadThumbnail(holder, thumbnailUrl);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+
+        // Styles and static text don't depend on the article, so they are set only once
+        holder.articleTitle.setTypeface(Typeface.defaultFromStyle(Typeface.BOLD));
+        holder.articleCategory.setTypeface(null, Typeface.BOLD + Typeface.ITALIC);
+
+        // Setting read more TextView with slight animation
+        holder.readMore.setText(R.string.readMore);
+        setReadMoreAnimation(holder.readMore);
+
+        // The texts of the following rows are laid out for the width of these views
+        mTextLayouts.attach(NewsTextLayouts.TITLE, holder.articleTitle);
+        mTextLayouts.attach(NewsTextLayouts.TRAIL_TEXT, holder.trailText);
+
+        itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int position = holder.getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    mListener.onArticleClick(getItem(position));
+                }
+            }
+        });
 
-            // Extracting the title without author's name as this one is already present
-            // in author's field
-            String originalTitle = article.getArticleTitle();
-            String authorName = article.getArticleAuthor();
-            String slimTitle;
+        return holder;
+    }
 
-            if (originalTitle.contains(authorName)) {
+    /**
+     * Displays the article at the given position in the list of articles. All of the text is
+     * precomputed by {@link NewsFormatter}, so binding a row only assigns fields, and the title
+     * and trail text reuse the layouts built by {@link #prefetch(int, int)} when there are some.
+     * A stub shows its title only, the row is rebound once {@link NewsWindow} has read its text back.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
 
-                String[] parts = originalTitle.split(TITLE_SEPARATOR + authorName);
-                slimTitle = parts[0];
+        long bindStart = System.nanoTime();
 
-            } else {
+        NewsItem article = getItem(position);
 
-                slimTitle = originalTitle;
-            }
+        holder.articleTitle.setText(article.getTitle(),
+                mTextLayouts.get(NewsTextLayouts.TITLE, article.getTitle()));
+        holder.articleCategory.setText(article.getCategory());
+        holder.articleAuthor.setText(article.getAuthorLine());
+        holder.articleDate.setText(article.getDateLine());
+        holder.trailText.setText(article.getTrailText(),
+                mTextLayouts.get(NewsTextLayouts.TRAIL_TEXT, article.getTrailText()));
 
-            // Setting the title field
-            holder.articleTitle.setTypeface(null, Typeface.BOLD);
-            holder.articleTitle.setText(slimTitle);
+        String thumbnailUrl = article.getThumbnailUrl();
+        holder.pendingThumbnailUrl = null;
 
-            // Setting the category field
-            holder.articleCategory.setTypeface(null, Typeface.BOLD + Typeface.ITALIC);
-            holder.articleCategory.setText(article.getSectionName());
+        if (thumbnailUrl == null) {
 
-            // Setting the author name field
-            String formattedAuthor = (convertView.getResources().getString(R.string.writtenBy) + article.getArticleAuthor());
-            holder.articleAuthor.setText(formattedAuthor);
+            // No thumbnail, so no request at all
+            mPicasso.cancelRequest(holder.thumbnail);
+            holder.thumbnail.setImageDrawable(null);
 
-            // Setting the date field
-            String date = article.getDatePublished();
-            String dateFormatted = (convertView.getResources().getString(R.string.publishedOn) + formattedDate(date));
-            holder.articleDate.setText(dateFormatted);
+        } else if (mThumbnailWidth == 0) {
 
-            // Some trail texts contain html tags. Code below extracts trail text without these tags.
-            String trailText = article.getTrailText();
-            String preFormattedTrailText;
-            String[] parts;
-            if (trailText.contains(FROM_HTML_BR1)) {
+            // The width to decode to is not known yet, the row loads it once laid out
+            mPicasso.cancelRequest(holder.thumbnail);
+            holder.thumbnail.setImageResource(R.drawable.thumbnail_placeholder);
+            holder.pendingThumbnailUrl = thumbnailUrl;
 
-                parts = trailText.split(FROM_HTML_BR1);
-                preFormattedTrailText = parts[0];
+        } else {
+            loadThumbnail(holder, thumbnailUrl);
+        }
 
-            } else if (trailText.contains(FROM_HTML_BR2)) {
+        NewsMetrics.BIND.recordSince(bindStart);
+    }
 
-                parts = trailText.split(FROM_HTML_BR2);
-                preFormattedTrailText = parts[0];
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        // The row is off screen, its pending thumbnail is not needed anymore
+        holder.pendingThumbnailUrl = null;
+        mPicasso.cancelRequest(holder.thumbnail);
+    }
 
-            } else if (trailText.contains(FROM_HTML_STRONG1) && trailText.contains(FROM_HTML_STRONG2)){
+    /**
+     * Warms the image caches with the thumbnails of the rows in the given range, e.g. the next
+     * screenful in the scroll direction, and lays out their titles and trail texts in the
+     * background. Thumbnails are only warmed once the width they are decoded to is known.
+     */
+    void prefetch(int fromPosition, int toPosition) {
 
-                parts = trailText.split(FROM_HTML_STRONG1);
-                String tempTrailText = parts[1];
+        int from = Math.max(0, fromPosition);
+        int to = Math.min(getItemCount() - 1, toPosition);
 
-                preFormattedTrailText = tempTrailText.replace(FROM_HTML_STRONG2, "");
+        List<String> titles = new ArrayList<>(Math.max(0, to - from + 1));
+        List<String> trailTexts = new ArrayList<>(Math.max(0, to - from + 1));
 
-            } else {
+        for (int i = from; i <= to; i++) {
 
-                preFormattedTrailText = trailText;
+            NewsItem article = getItem(i);
+            String thumbnailUrl = article.getThumbnailUrl();
 
+            if (thumbnailUrl != null && mThumbnailWidth > 0) {
+                load(thumbnailUrl).priority(Picasso.Priority.LOW).fetch();
             }
 
-            // Setting the trail text field
-            String formattedTrailText = (preFormattedTrailText + convertView.getResources().getString(R.string.dots));
-            holder.trailText.setText(formattedTrailText);
-
-            // Setting read more TextView with slight animation
-            holder.readMore.setText(R.string.readMore);
-            setReadMoreAnimation(holder.readMore);
+            titles.add(article.getTitle());
+            trailTexts.add(article.getTrailText());
+        }
 
-            // Using the Picasso plugin to set the proper thumbnail with given url
-            Picasso.get().load(article.getThumbnailUrl()).into(holder.thumbnail);
+        mTextLayouts.prefetch(NewsTextLayouts.TITLE, titles);
+        mTextLayouts.prefetch(NewsTextLayouts.TRAIL_TEXT, trailTexts);
+    }
 
-        }
+    /**
+     * Returns whether the adapter has applied the given list, rather than an earlier one
+     * or one whose diff is still being computed.
+     */
+    boolean isShowing(List<NewsItem> articles) {
+        return getItemCount() == articles.size() && (articles.isEmpty() || getItem(0) == articles.get(0));
+    }
 
-        // Return the convertView that is now showing the appropriate data
-        return convertView;
+    // Using the Picasso plugin to set the proper thumbnail with given url,
+    // decoded to the width of the thumbnail view
+    private void loadThumbnail(ViewHolder holder, String thumbnailUrl) {
+        load(thumbnailUrl)
+                .placeholder(R.drawable.thumbnail_placeholder)
+                .into(holder.thumbnail);
+    }
 
+    // Returns a request for the thumbnail decoded to the thumbnail view's width, which must be known
+    private RequestCreator load(String thumbnailUrl) {
+        return mPicasso.load(thumbnailUrl).resize(mThumbnailWidth, 0).onlyScaleDown();
     }
 
     // This method set the animation for read more TextView
@@ -177,42 +272,30 @@ class NewsAdapter extends ArrayAdapter<News> {
 
     }
 
-    // Returns the formatted date String
-    private String formattedDate(String inputDate) {
-
-        String inputFormat = getContext().getResources().getString(R.string.input_format);
-
-        String outputFormat = getContext().getResources().getString(R.string.output_format);
-
-        Date parsed;
-        String outputDate = "";
-
-        SimpleDateFormat dfInput = new SimpleDateFormat(inputFormat, java.util.Locale.getDefault());
-        SimpleDateFormat dfOutput = new SimpleDateFormat(outputFormat, java.util.Locale.getDefault());
-
-        try {
-
-            parsed = dfInput.parse(inputDate);
-            outputDate = dfOutput.format(parsed);
-
-        } catch (Exception e) {
-
-            Log.e(getContext().getResources().getString(R.string.adapter_date_log_tag), getContext().getResources().getString(R.string.adapter_date_log_msg) + e.getMessage());
-
+    static class ViewHolder extends RecyclerView.ViewHolder {
+
+        private final NewsTextView articleTitle;
+        private final TextView articleCategory;
+        private final TextView articleAuthor;
+        private final TextView articleDate;
+        private final NewsTextView trailText;
+        private final TextView readMore;
+        private final ImageView thumbnail;
+
+        /**
+         * Thumbnail to load once the width of the thumbnail views is known
+         */
+        private String pendingThumbnailUrl;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            articleTitle = itemView.findViewById(R.id.title);
+            articleCategory = itemView.findViewById(R.id.category);
+            articleAuthor = itemView.findViewById(R.id.author);
+            articleDate = itemView.findViewById(R.id.date);
+            trailText = itemView.findViewById(R.id.trailText);
+            readMore = itemView.findViewById(R.id.readMore);
+            thumbnail = itemView.findViewById(R.id.thumbnail);
         }
-
-        return outputDate;
-    }
-
-    private static class ViewHolder {
-
-        private TextView articleTitle;
-        private TextView articleCategory;
-        private TextView articleAuthor;
-        private TextView articleDate;
-        private TextView trailText;
-        private TextView readMore;
-        private ImageView thumbnail;
-
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,435 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.common.hash.Hashing;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Disk-backed cache of Guardian responses keyed by request URL.
+ * Every entry keeps the raw response body together with its ETag and Last-Modified
+ * validators, so the next request for the same URL can be sent as a conditional one.
+ * The most recently used parsed lists are also kept in memory, which lets a 304
+ * response be served without parsing the stored body again.
+ */
+class NewsCache {
+
+    private static final String LOG_TAG = NewsCache.class.getSimpleName();
+
+    /**
+     * Name of the directory (inside the app's cache dir) holding the entries
+     */
+    private static final String CACHE_DIR = "news_responses";
+
+    private static final String BODY_SUFFIX = ".json";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Number of responses kept on disk and parsed lists kept in memory
+     */
+    private static final int MAX_DISK_ENTRIES = 20;
+    private static final int MAX_MEMORY_ENTRIES = 8;
+
+    private static NewsCache sInstance;
+
+    private final File mDirectory;
+
+    private final LruCache<String, Entry> mMemory = new LruCache<>(MAX_MEMORY_ENTRIES);
+
+    /**
+     * Whether the temp files left by a previous process have been deleted, guarded by this cache
+     */
+    private boolean mTempFilesCleared;
+
+    /**
+     * Returns the cache living in the application's cache directory.
+     */
+    static synchronized NewsCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NewsCache(new File(context.getApplicationContext().getCacheDir(), CACHE_DIR));
+        }
+        return sInstance;
+    }
+
+    NewsCache(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Returns the validators stored with the URL's response, or null if there is none.
+     */
+    Validators validators(String url) {
+
+        String key = key(url);
+        Entry entry = mMemory.get(key);
+
+        if (entry != null) {
+            return entry.validators;
+        }
+
+        File meta = new File(mDirectory, key + META_SUFFIX);
+
+        if (!meta.exists() || !new File(mDirectory, key + BODY_SUFFIX).exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+
+        try {
+
+            in = new DataInputStream(new FileInputStream(meta));
+            return new Validators(emptyToNull(in.readUTF()), emptyToNull(in.readUTF()));
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Cache metadata reading problem", e);
+            return null;
+
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Returns the stored articles for the URL, parsing the stored body only if the
+     * list is no longer kept in memory. Returns null if nothing is stored.
+     */
+    List<News> get(String url) {
+
+        String key = key(url);
+        Entry entry = mMemory.get(key);
+
+        if (entry != null) {
+            return entry.articles;
+        }
+
+        Validators validators = validators(url);
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+
+        if (validators == null) {
+            return null;
+        }
+
+        InputStream in = null;
+
+        try {
+
+            in = new FileInputStream(body);
+            Entry parsed = new Entry(validators, NewsUtils.extractFeatureFromJson(in));
+            mMemory.put(key, parsed);
+            return parsed.articles;
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Cached response reading problem", e);
+            return null;
+
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Wraps the response stream so that every byte read from it is also written to a
+     * temporary file of its own, so that responses of the same URL can be recorded at the
+     * same time (e.g. by the background sync and a foreground load). Call {@link #commit}
+     * once the stream has been fully consumed.
+     */
+    Recorder record(String url, InputStream response) throws IOException {
+
+        File temp;
+
+        synchronized (this) {
+
+            if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                throw new IOException("Cannot create " + mDirectory);
+            }
+
+            if (!mTempFilesCleared) {
+                deleteTempFiles();
+                mTempFilesCleared = true;
+            }
+
+            temp = File.createTempFile(key(url), TEMP_SUFFIX, mDirectory);
+        }
+
+        return new Recorder(url, temp, response);
+    }
+
+    /**
+     * Replaces the URL's entry with the recorded body, its validators and the parsed articles.
+     * The body is renamed into place, and the entries of concurrent recordings are replaced
+     * one after the other, each with its own validators.
+     */
+    synchronized void commit(Recorder recorder, Validators validators, List<News> articles) {
+
+        String key = key(recorder.url);
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+        File meta = new File(mDirectory, key + META_SUFFIX);
+
+        DataOutputStream out = null;
+
+        try {
+
+            recorder.close();
+
+            if (!recorder.temp.renameTo(body)) {
+                throw new IOException("Cannot move " + recorder.temp + " to " + body);
+            }
+
+            out = new DataOutputStream(new FileOutputStream(meta));
+            out.writeUTF(nullToEmpty(validators.eTag));
+            out.writeUTF(nullToEmpty(validators.lastModified));
+            out.close();
+            out = null;
+
+            mMemory.put(key, new Entry(validators, articles));
+
+            trimToSize();
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Response caching problem", e);
+            remove(key);
+
+        } finally {
+            closeQuietly(out);
+            if (recorder.temp.exists() && !recorder.temp.delete()) {
+                Log.e(LOG_TAG, "Cannot delete " + recorder.temp);
+            }
+        }
+    }
+
+    /**
+     * Drops the recorded body of a response that could not be fully parsed, keeping the
+     * URL's current entry, if any.
+     */
+    void abort(Recorder recorder) {
+
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Response caching problem", e);
+        }
+
+        if (recorder.temp.exists() && !recorder.temp.delete()) {
+            Log.e(LOG_TAG, "Cannot delete " + recorder.temp);
+        }
+    }
+
+    /**
+     * Marks the URL's entry as freshly validated after a 304 response.
+     */
+    void touch(String url) {
+        File body = new File(mDirectory, key(url) + BODY_SUFFIX);
+        if (body.exists() && !body.setLastModified(System.currentTimeMillis())) {
+            Log.e(LOG_TAG, "Cannot touch " + body);
+        }
+    }
+
+    /**
+     * Returns the wall-clock time the URL's response was last downloaded or validated,
+     * or 0 if it is not stored.
+     */
+    long validatedAt(String url) {
+        return new File(mDirectory, key(url) + BODY_SUFFIX).lastModified();
+    }
+
+    // Removes the least recently validated responses above MAX_DISK_ENTRIES
+    private void trimToSize() {
+
+        File[] bodies = mDirectory.listFiles();
+
+        if (bodies == null) {
+            return;
+        }
+
+        bodies = filterBodies(bodies);
+
+        if (bodies.length <= MAX_DISK_ENTRIES) {
+            return;
+        }
+
+        Arrays.sort(bodies, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                // Long.compare needs API 19
+                long x = a.lastModified();
+                long y = b.lastModified();
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+
+        for (int i = 0; i < bodies.length - MAX_DISK_ENTRIES; i++) {
+            String name = bodies[i].getName();
+            remove(name.substring(0, name.length() - BODY_SUFFIX.length()));
+        }
+    }
+
+    // Deletes the temp files of recordings interrupted by the end of a previous process
+    private void deleteTempFiles() {
+
+        File[] files = mDirectory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX) && !file.delete()) {
+                Log.e(LOG_TAG, "Cannot delete " + file);
+            }
+        }
+    }
+
+    private static File[] filterBodies(File[] files) {
+
+        int count = 0;
+        File[] bodies = new File[files.length];
+
+        for (File file : files) {
+            if (file.getName().endsWith(BODY_SUFFIX)) {
+                bodies[count++] = file;
+            }
+        }
+
+        return Arrays.copyOf(bodies, count);
+    }
+
+    private void remove(String key) {
+
+        mMemory.remove(key);
+
+        File body = new File(mDirectory, key + BODY_SUFFIX);
+        File meta = new File(mDirectory, key + META_SUFFIX);
+
+        if ((body.exists() && !body.delete()) || (meta.exists() && !meta.delete())) {
+            Log.e(LOG_TAG, "Cannot delete cache entry " + key);
+        }
+    }
+
+    private static String key(String url) {
+        return Hashing.sha256().hashString(url, Charset.forName("UTF-8")).toString();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Stream closing problem", e);
+            }
+        }
+    }
+
+    /**
+     * ETag and Last-Modified values of a stored response, either may be null.
+     */
+    static class Validators {
+
+        final String eTag;
+
+        final String lastModified;
+
+        Validators(String eTag, String lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Response stream that copies everything read through it into the cache's temp file.
+     */
+    static class Recorder extends FilterInputStream {
+
+        private final String url;
+
+        private final File temp;
+
+        private final OutputStream copy;
+
+        private Recorder(String url, File temp, InputStream response) throws IOException {
+            super(response);
+            this.url = url;
+            this.temp = temp;
+            this.copy = new FileOutputStream(temp);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                copy.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must still end up in the copy
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                copy.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final Validators validators;
+
+        private final ArticleBatch articles;
+
+        private Entry(Validators validators, List<News> articles) {
+            this.validators = validators;
+            this.articles = ArticleBatch.of(articles);
+        }
+    }
+}
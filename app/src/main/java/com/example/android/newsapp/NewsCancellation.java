@@ -0,0 +1,131 @@
+package com.example.android.newsapp;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+
+/**
+ * Cooperative cancellation of a fetch, shared by the loader that starts it and every stage it
+ * runs through. Cancelling aborts the HTTP call in flight (closing its connection), wakes up a
+ * retry backoff, and makes the parser stop at the next article. A token runs one call at a
+ * time; stages running concurrently each get a child token, cancelled along with its parent.
+ */
+final class NewsCancellation {
+
+    private boolean mCanceled;
+
+    private Call mCall;
+
+    private final List<NewsCancellation> mChildren = new ArrayList<>();
+
+    /**
+     * Cancels the fetch. Can be called from any thread, more than once.
+     */
+    synchronized void cancel() {
+
+        if (mCanceled) {
+            return;
+        }
+
+        mCanceled = true;
+
+        if (mCall != null) {
+            mCall.cancel();
+        }
+
+        // A child never locks its parent, so it can be cancelled while holding this lock
+        for (NewsCancellation child : mChildren) {
+            child.cancel();
+        }
+
+        mChildren.clear();
+
+        notifyAll();
+    }
+
+    synchronized boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Throws a {@link CanceledException} if the fetch has been cancelled.
+     */
+    void throwIfCanceled() throws CanceledException {
+        if (isCanceled()) {
+            throw new CanceledException();
+        }
+    }
+
+    /**
+     * Registers the HTTP call being run, cancelled right away if the fetch already is.
+     */
+    synchronized void setCall(Call call) {
+
+        mCall = call;
+
+        if (mCanceled && call != null) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * Returns a token for a stage running concurrently with the other stages of this fetch,
+     * cancelled when this one is (right away if it already is). Pass it to
+     * {@link #removeChild} once the stage is over.
+     */
+    synchronized NewsCancellation newChild() {
+
+        NewsCancellation child = new NewsCancellation();
+
+        if (mCanceled) {
+            child.cancel();
+        } else {
+            mChildren.add(child);
+        }
+
+        return child;
+    }
+
+    /**
+     * Forgets a child token whose stage is over.
+     */
+    synchronized void removeChild(NewsCancellation child) {
+        mChildren.remove(child);
+    }
+
+    /**
+     * Waits for the given time, or until the fetch is cancelled.
+     *
+     * @throws CanceledException if the fetch is cancelled before or while waiting
+     */
+    synchronized void sleep(long millis) throws InterruptedIOException {
+
+        long end = System.currentTimeMillis() + millis;
+
+        try {
+
+            for (long left = millis; left > 0 && !mCanceled; left = end - System.currentTimeMillis()) {
+                wait(left);
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting");
+
+        }
+
+        throwIfCanceled();
+    }
+
+    /**
+     * Thrown by a stage of a cancelled fetch. Being an interruption, it is never retried.
+     */
+    static class CanceledException extends InterruptedIOException {
+        CanceledException() {
+            super("Fetch canceled");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.android.newsapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops sending requests to the API while it is failing. After a number of consecutive
+ * failures the breaker opens and rejects every request for a while; then a single trial
+ * request is let through, which closes the breaker if it succeeds or opens it again if not.
+ */
+final class NewsCircuitBreaker {
+
+    private final int mFailureThreshold;
+
+    private final long mOpenNanos;
+
+    private int mFailures;
+
+    private boolean mOpen;
+
+    private long mOpenedAt;
+
+    private boolean mTrialInFlight;
+
+    /**
+     * Constructs a new {@link NewsCircuitBreaker}.
+     *
+     * @param failureThreshold number of consecutive failures opening the breaker
+     * @param openMillis       time during which an open breaker rejects every request
+     */
+    NewsCircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Returns whether a request may be sent now. Once the breaker has been open long enough,
+     * returns true for a single trial request until its outcome is reported.
+     */
+    synchronized boolean allowRequest() {
+
+        if (!mOpen) {
+            return true;
+        }
+
+        if (mTrialInFlight || System.nanoTime() - mOpenedAt < mOpenNanos) {
+            return false;
+        }
+
+        mTrialInFlight = true;
+        return true;
+    }
+
+    /**
+     * Reports a request the API answered properly, closing the breaker.
+     */
+    synchronized void onSuccess() {
+        mFailures = 0;
+        mOpen = false;
+        mTrialInFlight = false;
+    }
+
+    /**
+     * Reports a failed request (timeout, network error or 5xx response).
+     */
+    synchronized void onFailure() {
+
+        mTrialInFlight = false;
+
+        if (mOpen || ++mFailures >= mFailureThreshold) {
+            mOpen = true;
+            mOpenedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Reports a request cancelled before its outcome was known. It counts neither as a success
+     * nor as a failure, but a cancelled trial request lets the next one through.
+     */
+    synchronized void onCanceled() {
+        mTrialInFlight = false;
+    }
+
+    synchronized boolean isOpen() {
+        return mOpen;
+    }
+}
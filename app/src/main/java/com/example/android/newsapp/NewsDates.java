@@ -0,0 +1,243 @@
+package com.example.android.newsapp;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Conversion of the API's ISO-8601 publication dates (e.g. "2018-05-06T12:34:56Z")
+ * to epoch milliseconds, and of epoch milliseconds to displayed dates.
+ */
+final class NewsDates {
+
+    /**
+     * Value returned for dates that cannot be parsed
+     */
+    static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    /**
+     * Length of "yyyy-MM-ddTHH:mm:ss"
+     */
+    private static final int DATE_TIME_LENGTH = 19;
+
+    private NewsDates() {
+    }
+
+    /**
+     * Returns the epoch milliseconds of an ISO-8601 date-time such as
+     * "2018-05-06T12:34:56Z", "2018-05-06T12:34:56.123Z" or "2018-05-06T12:34:56+01:00",
+     * or {@link #UNKNOWN} if the text is not in one of these forms. Does not allocate.
+     */
+    static long parse(CharSequence text) {
+
+        if (text == null || text.length() < DATE_TIME_LENGTH
+                || text.charAt(4) != '-' || text.charAt(7) != '-'
+                || (text.charAt(10) != 'T' && text.charAt(10) != 't')
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            return UNKNOWN;
+        }
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+
+        int position = DATE_TIME_LENGTH;
+        int length = text.length();
+        long millis = 0;
+
+        // Optional fraction of a second, only the first three digits are significant
+        if (position < length && text.charAt(position) == '.') {
+
+            position++;
+            int scale = 100;
+            int start = position;
+
+            while (position < length && isDigit(text.charAt(position))) {
+                millis += scale * (text.charAt(position) - '0');
+                scale /= 10;
+                position++;
+            }
+
+            if (position == start) {
+                return UNKNOWN;
+            }
+        }
+
+        long offset;
+
+        if (position == length - 1 && (text.charAt(position) == 'Z' || text.charAt(position) == 'z')) {
+
+            offset = 0;
+
+        } else if (position < length && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+
+            int sign = text.charAt(position) == '-' ? -1 : 1;
+            int remaining = length - position - 1;
+            int offsetHours;
+            int offsetMinutes;
+
+            if (remaining == 5 && text.charAt(position + 3) == ':') {
+                offsetHours = digits(text, position + 1, 2);
+                offsetMinutes = digits(text, position + 4, 2);
+            } else if (remaining == 4) {
+                offsetHours = digits(text, position + 1, 2);
+                offsetMinutes = digits(text, position + 3, 2);
+            } else if (remaining == 2) {
+                offsetHours = digits(text, position + 1, 2);
+                offsetMinutes = 0;
+            } else {
+                return UNKNOWN;
+            }
+
+            if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return UNKNOWN;
+            }
+
+            offset = sign * (offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE);
+
+        } else {
+
+            return UNKNOWN;
+
+        }
+
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + hour * MILLIS_PER_HOUR
+                + minute * MILLIS_PER_MINUTE
+                + second * MILLIS_PER_SECOND
+                + millis
+                - offset;
+    }
+
+    /**
+     * Returns the epoch milliseconds of the UTC midnight of a date such as "2018-05-06",
+     * the form of the "from-date" and "to-date" query parameters, or {@link #UNKNOWN}.
+     */
+    static long parseDay(CharSequence text) {
+
+        if (text == null || text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return UNKNOWN;
+        }
+
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return UNKNOWN;
+        }
+
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Returns the epoch milliseconds of the UTC midnight following a date such as "2018-05-06",
+     * so that a "to-date" range includes the whole day, or {@link #UNKNOWN}.
+     */
+    static long parseDayEnd(CharSequence text) {
+        long start = parseDay(text);
+        return start == UNKNOWN ? UNKNOWN : start + MILLIS_PER_DAY;
+    }
+
+    // Returns the value of count decimal digits starting at start, or -1
+    private static int digits(CharSequence text, int start, int count) {
+
+        int value = 0;
+
+        for (int i = start; i < start + count; i++) {
+
+            char c = text.charAt(i);
+
+            if (!isDigit(c)) {
+                return -1;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Returns the number of days between 1970-01-01 and the given proleptic Gregorian date
+    private static long daysFromCivil(int year, int month, int day) {
+
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Formats epoch milliseconds as local dates using a pattern and locale. Articles are mostly
+     * published on a handful of days, so the text of the last formatted day is reused and
+     * formatting a date of the same day does not allocate. Not thread-safe.
+     */
+    static class DayFormatter {
+
+        private final SimpleDateFormat mFormat;
+
+        private final TimeZone mTimeZone;
+
+        private long mLastDay = UNKNOWN;
+
+        private String mLastText;
+
+        /**
+         * Constructs a new {@link DayFormatter} for the device's time zone.
+         *
+         * @param pattern of the displayed dates
+         * @param locale  of the displayed dates
+         */
+        DayFormatter(String pattern, Locale locale) {
+            this(pattern, locale, TimeZone.getDefault());
+        }
+
+        DayFormatter(String pattern, Locale locale, TimeZone timeZone) {
+            mFormat = new SimpleDateFormat(pattern, locale);
+            mFormat.setTimeZone(timeZone);
+            mTimeZone = timeZone;
+        }
+
+        /**
+         * Returns the displayed date of the given epoch milliseconds, or an empty string
+         * for {@link #UNKNOWN}.
+         */
+        String format(long millis) {
+
+            if (millis == UNKNOWN) {
+                return "";
+            }
+
+            long local = millis + mTimeZone.getOffset(millis);
+            long day = local >= 0 ? local / MILLIS_PER_DAY : (local + 1) / MILLIS_PER_DAY - 1;
+
+            if (day != mLastDay) {
+                mLastText = mFormat.format(new Date(millis));
+                mLastDay = day;
+            }
+
+            return mLastText;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.android.newsapp;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Draws a divider of a fixed height between the articles, the way the ListView's
+ * divider and dividerHeight attributes used to.
+ */
+class NewsDividerDecoration extends RecyclerView.ItemDecoration {
+
+    private final Drawable mDivider;
+
+    private final int mHeight;
+
+    /**
+     * Constructs a new {@link NewsDividerDecoration}.
+     *
+     * @param divider drawable stretched between two articles
+     * @param height  of the divider in pixels
+     */
+    NewsDividerDecoration(Drawable divider, int height) {
+        mDivider = divider;
+        mHeight = height;
+    }
+
+    @Override
+    public void getItemOffsets(Rect outRect, View view, RecyclerView parent, RecyclerView.State state) {
+        int position = parent.getChildAdapterPosition(view);
+        boolean last = position == RecyclerView.NO_POSITION || position == state.getItemCount() - 1;
+        outRect.set(0, 0, 0, last ? 0 : mHeight);
+    }
+
+    @Override
+    public void onDraw(Canvas canvas, RecyclerView parent, RecyclerView.State state) {
+
+        int left = parent.getPaddingLeft();
+        int right = parent.getWidth() - parent.getPaddingRight();
+
+        for (int i = 0; i < parent.getChildCount(); i++) {
+
+            View child = parent.getChildAt(i);
+            int position = parent.getChildAdapterPosition(child);
+
+            if (position == RecyclerView.NO_POSITION || position == state.getItemCount() - 1) {
+                continue;
+            }
+
+            int top = child.getBottom() + Math.round(child.getTranslationY());
+            mDivider.setBounds(left, top, right, top + mHeight);
+            mDivider.draw(canvas);
+        }
+    }
+}
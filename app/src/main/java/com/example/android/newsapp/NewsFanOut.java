@@ -0,0 +1,143 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the per-section URLs of a query concurrently on a small bounded pool, and hands
+ * every section back to the calling thread as soon as it has arrived.
+ */
+final class NewsFanOut {
+
+    private static final String LOG_TAG = NewsFanOut.class.getSimpleName();
+
+    /**
+     * Maximum number of sections fetched at the same time
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    /**
+     * Receives the sections in the order they arrive, on the thread that called
+     * {@link #fetchAll}.
+     */
+    interface Callback {
+
+        /**
+         * @param index    position of the section's URL in the fetched list
+         * @param articles articles of the section
+         */
+        void onSectionLoaded(int index, List<News> articles);
+    }
+
+    private NewsFanOut() {
+    }
+
+    /**
+     * Fetches all the URLs concurrently through the shared requests and blocks until the last one has been handed to the
+     * callback.
+     */
+    static void fetchAll(List<String> urls, NewsRequests requests, boolean forceRefresh, Callback callback) {
+        fetchAll(urls, requests, forceRefresh, new NewsCancellation(), callback);
+    }
+
+    /**
+     * Fetches all the URLs like {@link #fetchAll(List, NewsRequests, boolean, Callback)} until the
+     * given cancellation aborts every request still running. Interrupting the calling thread
+     * cancels them as well. Sections arriving after the cancellation are not handed over.
+     */
+    static void fetchAll(List<String> urls, final NewsRequests requests, final boolean forceRefresh,
+                         final NewsCancellation cancellation, Callback callback) {
+
+        CompletionService<Section> completionService = new ExecutorCompletionService<>(EXECUTOR);
+
+        for (int i = 0; i < urls.size(); i++) {
+
+            final int index = i;
+            final String url = urls.get(i);
+
+            completionService.submit(new Callable<Section>() {
+                @Override
+                public Section call() {
+
+                    // Each section runs its own call, all of them are aborted by the cancellation
+                    NewsCancellation section = cancellation.newChild();
+
+                    try {
+                        return new Section(index, requests.fetch(url, forceRefresh, null, section));
+                    } finally {
+                        cancellation.removeChild(section);
+                    }
+                }
+            });
+        }
+
+        for (int i = 0; i < urls.size(); i++) {
+
+            try {
+
+                Future<Section> future = completionService.take();
+                Section section = future.get();
+
+                if (cancellation.isCanceled()) {
+                    return;
+                }
+
+                callback.onSectionLoaded(section.index, section.articles);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                cancellation.cancel();
+                return;
+
+            } catch (ExecutionException e) {
+
+                Log.e(LOG_TAG, "Section fetching problem", e);
+
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "NewsFanOut #" + mCount.incrementAndGet());
+            }
+        });
+
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    private static class Section {
+
+        private final int index;
+
+        private final List<News> articles;
+
+        private Section(int index, List<News> articles) {
+            this.index = index;
+            this.articles = articles;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over the titles, authors and trail texts of the loaded articles,
+ * narrowing the shown list as the user types. Articles are indexed as the loaders deliver them,
+ * and again only when their text changes, and a query only walks the sorted terms starting with
+ * each typed word, never the text of the articles. Not thread-safe, used from the main thread.
+ */
+final class NewsFilter {
+
+    /**
+     * Number of indexed articles no longer shown, above which the index is rebuilt from the
+     * shown list
+     */
+    private static final int MAX_STALE_ARTICLES = 1000;
+
+    /**
+     * Indexed text of each article id
+     */
+    private final Map<String, Doc> mDocs = new HashMap<>();
+
+    /**
+     * Number given to the next indexed text. An article whose text changes gets a new one, so
+     * the postings stay in ascending order.
+     */
+    private int mNextDoc;
+
+    /**
+     * Sorted terms, each with the ascending document numbers of the articles containing it
+     */
+    private final TreeMap<String, Postings> mTerms = new TreeMap<>();
+
+    /**
+     * Same postings as {@link #mTerms}, looked up by hash while indexing. Most words of a new
+     * article are already known, so only the new ones are inserted into the sorted map.
+     */
+    private final Map<String, Postings> mTermLookup = new HashMap<>();
+
+    /**
+     * List whose document numbers are held in {@link #mListDocs}
+     */
+    private List<NewsItem> mList;
+
+    private int[] mListDocs;
+
+    private final StringBuilder mToken = new StringBuilder();
+
+    /**
+     * Indexes the articles of the list not indexed yet, and the ones whose text changed since
+     * they were. A stub is only indexed by its title until it gets its text back, and keeps
+     * the text it was indexed with before being shrunk.
+     */
+    void index(List<NewsItem> articles) {
+
+        if (mNextDoc > articles.size() + MAX_STALE_ARTICLES) {
+            mDocs.clear();
+            mTerms.clear();
+            mTermLookup.clear();
+            mNextDoc = 0;
+            mList = null;
+        }
+
+        for (int i = 0; i < articles.size(); i++) {
+
+            NewsItem article = articles.get(i);
+            Doc indexed = mDocs.get(article.getId());
+
+            if (indexed != null && (article.isStub() || indexed.hasTextOf(article))) {
+                continue;
+            }
+
+            if (indexed != null) {
+                removeTerms(indexed);
+                mList = null;
+            }
+
+            Doc doc = new Doc(mNextDoc++, article);
+            mDocs.put(article.getId(), doc);
+
+            List<String> terms = new ArrayList<>();
+            addTerms(doc.mNumber, article.getTitle(), terms);
+            addTerms(doc.mNumber, article.getArticleAuthor(), terms);
+            addTerms(doc.mNumber, article.getTrailText(), terms);
+            doc.mTerms = terms.toArray(new String[terms.size()]);
+        }
+    }
+
+    /**
+     * Returns the articles of the list, in the same order, having a word starting with each word
+     * of the query, or the list itself for a blank query. The list must have been indexed.
+     */
+    List<NewsItem> filter(List<NewsItem> articles, CharSequence query) {
+
+        List<String> words = tokenize(query);
+
+        if (words.isEmpty()) {
+            return articles;
+        }
+
+        BitSet matches = null;
+
+        for (String word : words) {
+
+            BitSet docs = prefixMatches(word);
+
+            if (matches == null) {
+                matches = docs;
+            } else {
+                matches.and(docs);
+            }
+
+            if (matches.isEmpty()) {
+                return new ArrayList<>(0);
+            }
+        }
+
+        int[] docs = listDocs(articles);
+        List<NewsItem> filtered = new ArrayList<>(Math.min(matches.cardinality(), articles.size()));
+
+        for (int i = 0; i < docs.length; i++) {
+            if (docs[i] >= 0 && matches.get(docs[i])) {
+                filtered.add(articles.get(i));
+            }
+        }
+
+        return filtered;
+    }
+
+    // Returns the documents having a term starting with the given prefix
+    private BitSet prefixMatches(String prefix) {
+
+        BitSet docs = new BitSet(mNextDoc);
+        NavigableMap<String, Postings> terms = mTerms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+
+        for (Postings postings : terms.values()) {
+            for (int i = 0; i < postings.mSize; i++) {
+                docs.set(postings.mDocs[i]);
+            }
+        }
+
+        return docs;
+    }
+
+    // Returns the document number of each position of the list, looked up once per list
+    private int[] listDocs(List<NewsItem> articles) {
+
+        if (articles == mList) {
+            return mListDocs;
+        }
+
+        int[] docs = new int[articles.size()];
+
+        for (int i = 0; i < docs.length; i++) {
+            Doc doc = mDocs.get(articles.get(i).getId());
+            docs[i] = doc == null ? -1 : doc.mNumber;
+        }
+
+        mList = articles;
+        mListDocs = docs;
+
+        return docs;
+    }
+
+    // Drops the document from the postings of its terms, and the terms left without any
+    private void removeTerms(Doc doc) {
+
+        for (String term : doc.mTerms) {
+
+            Postings postings = mTermLookup.get(term);
+            postings.remove(doc.mNumber);
+
+            if (postings.mSize == 0) {
+                mTermLookup.remove(term);
+                mTerms.remove(term);
+            }
+        }
+    }
+
+    // Adds the document to the postings of the words of the text, and the words new to the
+    // document to its terms
+    private void addTerms(int doc, String text, List<String> docTerms) {
+
+        if (text == null) {
+            return;
+        }
+
+        int length = text.length();
+
+        for (int i = 0; i <= length; i++) {
+
+            char c = i < length ? text.charAt(i) : ' ';
+
+            if (Character.isLetterOrDigit(c)) {
+                mToken.append(Character.toLowerCase(c));
+                continue;
+            }
+
+            if (mToken.length() > 0) {
+
+                String term = mToken.toString();
+                Postings postings = mTermLookup.get(term);
+
+                if (postings == null) {
+                    postings = new Postings(term);
+                    mTermLookup.put(term, postings);
+                    mTerms.put(term, postings);
+                }
+
+                // The term instance of the postings, shared by every document having it
+                if (postings.add(doc)) {
+                    docTerms.add(postings.mTerm);
+                }
+
+                mToken.setLength(0);
+            }
+        }
+    }
+
+    // Splits the text into lower-case words the same way as the indexed text
+    private static List<String> tokenize(CharSequence text) {
+
+        List<String> words = new ArrayList<>();
+
+        if (text == null) {
+            return words;
+        }
+
+        StringBuilder word = new StringBuilder();
+        int length = text.length();
+
+        for (int i = 0; i <= length; i++) {
+
+            char c = i < length ? text.charAt(i) : ' ';
+
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Indexed version of an article. Only a hash of its text is kept, not the text itself,
+     * which the list drops from the articles away from the screen.
+     */
+    private static final class Doc {
+
+        private final int mNumber;
+
+        private final boolean mStub;
+
+        private final int mTextHash;
+
+        /**
+         * Distinct terms of the document, to drop it from their postings once its text changes
+         */
+        private String[] mTerms;
+
+        Doc(int number, NewsItem article) {
+            mNumber = number;
+            mStub = article.isStub();
+            mTextHash = textHash(article);
+        }
+
+        // Only called for an item holding its text
+        boolean hasTextOf(NewsItem article) {
+            return !mStub && mTextHash == textHash(article);
+        }
+
+        private static int textHash(NewsItem article) {
+            return 31 * (31 * hash(article.getTitle()) + hash(article.getArticleAuthor()))
+                    + hash(article.getTrailText());
+        }
+
+        private static int hash(String text) {
+            return text == null ? 0 : text.hashCode();
+        }
+    }
+
+    /**
+     * Growable array of ascending document numbers
+     */
+    private static final class Postings {
+
+        private final String mTerm;
+
+        private int[] mDocs = new int[2];
+
+        private int mSize;
+
+        Postings(String term) {
+            mTerm = term;
+        }
+
+        // Returns false for a term repeated within the same article
+        boolean add(int doc) {
+
+            if (mSize > 0 && mDocs[mSize - 1] == doc) {
+                return false;
+            }
+
+            if (mSize == mDocs.length) {
+                int[] grown = new int[mSize * 2];
+                System.arraycopy(mDocs, 0, grown, 0, mSize);
+                mDocs = grown;
+            }
+
+            mDocs[mSize++] = doc;
+
+            return true;
+        }
+
+        void remove(int doc) {
+
+            int index = Arrays.binarySearch(mDocs, 0, mSize, doc);
+
+            if (index >= 0) {
+                System.arraycopy(mDocs, index + 1, mDocs, index, mSize - index - 1);
+                mSize--;
+            }
+        }
+    }
+}
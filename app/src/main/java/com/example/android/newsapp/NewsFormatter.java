@@ -0,0 +1,192 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns parsed {@link News} articles into {@link NewsItem}s holding the final text of
+ * every field of a list item. Meant to run on the loader's background thread; an instance
+ * is not thread-safe and should be used by a single thread.
+ */
+class NewsFormatter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String TITLE_SEPARATOR = "| ";
+
+    private static final String FROM_HTML_BR1 = " <br />";
+
+    private static final String FROM_HTML_BR2 = "<br>";
+
+    private static final String FROM_HTML_STRONG1 = "<strong>";
+
+    private static final String FROM_HTML_STRONG2 = "</strong>";
+
+    private final String mWrittenBy;
+
+    private final String mPublishedOn;
+
+    private final String mDots;
+
+    private final NewsDates.DayFormatter mDateFormatter;
+
+    /**
+     * Constructs a new {@link NewsFormatter}.
+     *
+     * @param writtenBy    is the prefix of the author field
+     * @param publishedOn  is the prefix of the date field
+     * @param dots         is the suffix of the trail text field
+     * @param outputFormat is the pattern of the displayed dates
+     */
+    NewsFormatter(String writtenBy, String publishedOn, String dots, String outputFormat) {
+        mWrittenBy = writtenBy;
+        mPublishedOn = publishedOn;
+        mDots = dots;
+        mDateFormatter = new NewsDates.DayFormatter(outputFormat, Locale.getDefault());
+    }
+
+    /**
+     * Returns the display items of the given articles, in the same order.
+     */
+    List<NewsItem> format(List<News> articles) {
+
+        if (articles instanceof ArticleBatch) {
+            return format((ArticleBatch) articles);
+        }
+
+        List<NewsItem> items = new ArrayList<>(articles.size());
+
+        for (News article : articles) {
+            items.add(format(article));
+        }
+
+        return items;
+    }
+
+    /**
+     * Returns the display items of the given batch, read in place without a {@link News}
+     * per article. The author line is built once per author of the batch.
+     */
+    List<NewsItem> format(ArticleBatch batch) {
+
+        List<NewsItem> items = new ArrayList<>(batch.size());
+        ArticleBatch.Cursor article = batch.cursor();
+        String[] authorLines = new String[batch.authorCount()];
+
+        while (article.moveToNext()) {
+
+            String author = article.getArticleAuthor();
+            int authorCode = article.getAuthorCode();
+            String authorLine;
+
+            if (authorCode < 0) {
+                authorLine = mWrittenBy + author;
+            } else {
+                authorLine = authorLines[authorCode];
+                if (authorLine == null) {
+                    authorLine = mWrittenBy + author;
+                    authorLines[authorCode] = authorLine;
+                }
+            }
+
+            items.add(format(article.getId(), article.getPublishedMillis(), article.getSectionName(),
+                    article.getArticleTitle(), author, authorLine, article.getTrailText(),
+                    article.getThumbnailUrl(), article.getArticleUrl()));
+        }
+
+        return items;
+    }
+
+    /**
+     * Returns the display item of a single article.
+     */
+    NewsItem format(News article) {
+        return format(article.getId(), article.getPublishedMillis(), article.getSectionName(),
+                article.getArticleTitle(), article.getArticleAuthor(), mWrittenBy + article.getArticleAuthor(),
+                article.getTrailText(), article.getThumbnailUrl(), article.getArticleUrl());
+    }
+
+    private NewsItem format(String id, long publishedMillis, String section, String title, String author,
+                            String authorLine, String trailText, String thumbnailUrl, String articleUrl) {
+
+        return new NewsItem(id, stableId(id), publishedMillis,
+                section,
+                slimTitle(title, author),
+                author,
+                authorLine,
+                mPublishedOn + mDateFormatter.format(publishedMillis),
+                formattedTrailText(trailText),
+                thumbnailUrl(thumbnailUrl),
+                articleUrl);
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the Guardian id, used as the stable id of the list item.
+     */
+    static long stableId(String id) {
+        return Hashing.farmHashFingerprint64().hashString(id, UTF_8).asLong();
+    }
+
+    /**
+     * Returns the thumbnail's web address, or null for articles without a thumbnail, so the
+     * list never sends the placeholder text as a request.
+     */
+    static String thumbnailUrl(String thumbnailUrl) {
+
+        if (thumbnailUrl == null || thumbnailUrl.isEmpty() || NewsUtils.KEY_NO_THUMBNAIL.equals(thumbnailUrl)) {
+            return null;
+        }
+
+        return thumbnailUrl;
+    }
+
+    /**
+     * Returns the title without the author's name, as this one is already present in the
+     * author's field.
+     */
+    static String slimTitle(String originalTitle, String authorName) {
+
+        int index = originalTitle.indexOf(TITLE_SEPARATOR + authorName);
+
+        return index < 0 ? originalTitle : originalTitle.substring(0, index);
+    }
+
+    /**
+     * Some trail texts contain html tags. Returns the trail text without these tags,
+     * followed by the dots.
+     */
+    String formattedTrailText(String trailText) {
+
+        String preFormattedTrailText;
+        int index;
+
+        if ((index = trailText.indexOf(FROM_HTML_BR1)) >= 0) {
+
+            preFormattedTrailText = trailText.substring(0, index);
+
+        } else if ((index = trailText.indexOf(FROM_HTML_BR2)) >= 0) {
+
+            preFormattedTrailText = trailText.substring(0, index);
+
+        } else if ((index = trailText.indexOf(FROM_HTML_STRONG1)) >= 0 && trailText.contains(FROM_HTML_STRONG2)) {
+
+            int start = index + FROM_HTML_STRONG1.length();
+            int end = trailText.indexOf(FROM_HTML_STRONG1, start);
+
+            preFormattedTrailText = trailText.substring(start, end < 0 ? trailText.length() : end)
+                    .replace(FROM_HTML_STRONG2, "");
+
+        } else {
+
+            preFormattedTrailText = trailText;
+
+        }
+
+        return preFormattedTrailText + mDots;
+    }
+}
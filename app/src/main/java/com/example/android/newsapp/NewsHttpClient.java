@@ -0,0 +1,271 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * HTTP client of the API requests. A single OkHttp client keeps the connections alive in a
+ * shared pool and negotiates HTTP/2 when the server supports it. Timeouts, network errors and
+ * 5xx responses are retried a bounded number of times with jittered exponential backoff, and
+ * a {@link NewsCircuitBreaker} stops sending requests for a while once the API keeps failing.
+ */
+class NewsHttpClient {
+
+    private static final String LOG_TAG = NewsHttpClient.class.getSimpleName();
+
+    /**
+     * Attempts per request, including the first one
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Bounds of the backoff before a retry, which doubles with every attempt
+     */
+    private static final long BASE_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    /**
+     * Consecutive failures opening the circuit breaker, and how long it stays open
+     */
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_OPEN_MILLIS = 30000;
+
+    /**
+     * Idle connections kept alive in the pool, and for how long
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static NewsHttpClient sInstance;
+
+    private final OkHttpClient mClient;
+
+    private final int mMaxAttempts;
+
+    private final long mBaseBackoffMillis;
+
+    private final long mMaxBackoffMillis;
+
+    private final NewsCircuitBreaker mBreaker;
+
+    private final Random mRandom = new Random();
+
+    /**
+     * Returns the client shared by all API requests.
+     */
+    static synchronized NewsHttpClient getInstance() {
+        if (sInstance == null) {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .connectTimeout(15, TimeUnit.SECONDS)
+                    .readTimeout(10, TimeUnit.SECONDS)
+                    // Retries are made (and counted by the breaker) by this class
+                    .retryOnConnectionFailure(false)
+                    .eventListenerFactory(MetricsListener.FACTORY)
+                    .build();
+            sInstance = new NewsHttpClient(client, MAX_ATTEMPTS, BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS,
+                    new NewsCircuitBreaker(BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link NewsHttpClient}.
+     *
+     * @param client            sending the requests
+     * @param maxAttempts       attempts per request, including the first one
+     * @param baseBackoffMillis upper bound of the backoff before the first retry
+     * @param maxBackoffMillis  upper bound of the backoff before any retry
+     * @param breaker           tracking the failures of all requests
+     */
+    NewsHttpClient(OkHttpClient client, int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                   NewsCircuitBreaker breaker) {
+        mClient = client;
+        mMaxAttempts = maxAttempts;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mBreaker = breaker;
+    }
+
+    /**
+     * Returns the underlying OkHttp client, so other clients (e.g. the thumbnails') can share
+     * its connection pool and dispatcher.
+     */
+    OkHttpClient okHttpClient() {
+        return mClient;
+    }
+
+    /**
+     * Sends the request, retrying timeouts, network errors and 5xx responses. Returns the
+     * response of the last attempt, which may still be a 5xx. The caller must close it.
+     *
+     * @throws CircuitOpenException if the API is failing and the request was not sent
+     * @throws IOException          if the last attempt failed without a response
+     */
+    Response execute(Request request) throws IOException {
+        return execute(request, new NewsCancellation());
+    }
+
+    /**
+     * Sends the request like {@link #execute(Request)}, until the given cancellation aborts it:
+     * the call in flight is cancelled, and a cancelled request is neither retried nor counted
+     * as a failure by the breaker. The response stays bound to the cancellation, so cancelling
+     * while its body is being read closes the connection.
+     *
+     * @throws NewsCancellation.CanceledException if the request was cancelled
+     */
+    Response execute(Request request, NewsCancellation cancellation) throws IOException {
+
+        // True while the breaker waits for the outcome of the attempt being sent, which may
+        // be its trial request
+        boolean pending = false;
+
+        try {
+
+            for (int attempt = 1; ; attempt++) {
+
+                cancellation.throwIfCanceled();
+
+                if (!mBreaker.allowRequest()) {
+                    NewsMetrics.CIRCUIT_REJECTIONS.increment();
+                    throw new CircuitOpenException();
+                }
+
+                pending = true;
+
+                Response response;
+
+                try {
+
+                    Call call = mClient.newCall(request);
+                    cancellation.setCall(call);
+                    response = call.execute();
+
+                } catch (IOException e) {
+
+                    // OkHttp reports a cancelled call as a plain IOException
+                    cancellation.throwIfCanceled();
+
+                    pending = false;
+                    mBreaker.onFailure();
+
+                    if (attempt >= mMaxAttempts || !isRetryable(e)) {
+                        throw e;
+                    }
+
+                    Log.w(LOG_TAG, "Attempt " + attempt + " failed, retrying", e);
+                    backOff(attempt, cancellation);
+                    continue;
+                }
+
+                pending = false;
+
+                if (response.code() < 500) {
+                    mBreaker.onSuccess();
+                    return response;
+                }
+
+                mBreaker.onFailure();
+
+                if (attempt >= mMaxAttempts) {
+                    return response;
+                }
+
+                Log.w(LOG_TAG, "Attempt " + attempt + " got " + response.code() + ", retrying");
+                response.close();
+                backOff(attempt, cancellation);
+            }
+
+        } catch (NewsCancellation.CanceledException e) {
+
+            // Every cancellation exit, the backoff's included, leaves through here. An attempt
+            // already reported does not hold the trial any more, and must not release the
+            // trial another request may have taken meanwhile.
+            if (pending) {
+                mBreaker.onCanceled();
+            }
+
+            throw e;
+        }
+    }
+
+    // Timeouts are retried, other interruptions mean the request was cancelled on purpose
+    private static boolean isRetryable(IOException e) {
+        return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+    }
+
+    // Sleeps for a random time up to the exponential backoff of the attempt ("full jitter"),
+    // unless the request is cancelled meanwhile
+    private void backOff(int attempt, NewsCancellation cancellation) throws IOException {
+
+        NewsMetrics.RETRIES.increment();
+
+        long bound = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << Math.min(attempt - 1, 16));
+        long delay = (long) (mRandom.nextDouble() * bound);
+
+        cancellation.sleep(delay);
+    }
+
+    /**
+     * Thrown when a request is not sent because the circuit breaker is open.
+     */
+    static class CircuitOpenException extends IOException {
+
+        CircuitOpenException() {
+            super("Circuit breaker open, request not sent");
+        }
+    }
+
+    /**
+     * Records the connect time (only for new connections, pooled ones have none) and the time
+     * to first byte of every call in {@link NewsMetrics}.
+     */
+    private static class MetricsListener extends EventListener {
+
+        static final Factory FACTORY = new Factory() {
+            @Override
+            public EventListener create(Call call) {
+                return new MetricsListener();
+            }
+        };
+
+        private long mConnectStart;
+
+        private long mRequestStart;
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            mConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            NewsMetrics.CONNECT.recordSince(mConnectStart);
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            mRequestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            NewsMetrics.TIME_TO_FIRST_BYTE.recordSince(mRequestStart);
+        }
+    }
+}
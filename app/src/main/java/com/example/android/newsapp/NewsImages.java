@@ -0,0 +1,107 @@
+package com.example.android.newsapp;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.StatFs;
+import android.util.Log;
+
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+
+import okhttp3.Cache;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+/**
+ * Image pipeline of the article list. Thumbnails are decoded by Picasso to the size of the
+ * thumbnail view, kept in a memory LRU sized as a fraction of the app's memory class and in a
+ * disk LRU sized as a fraction of the free storage.
+ */
+final class NewsImages {
+
+    private static final String LOG_TAG = NewsImages.class.getSimpleName();
+
+    /**
+     * Name of the directory (inside the app's cache dir) holding the downloaded thumbnails
+     */
+    private static final String CACHE_DIR = "thumbnails";
+
+    /**
+     * Share of the app's memory class given to decoded thumbnails
+     */
+    private static final int MEMORY_CACHE_DIVISOR = 7;
+
+    /**
+     * Share of the free storage given to downloaded thumbnails, and its bounds
+     */
+    private static final int DISK_CACHE_DIVISOR = 50;
+    private static final long MIN_DISK_CACHE_SIZE = 5 * 1024 * 1024;
+    private static final long MAX_DISK_CACHE_SIZE = 50 * 1024 * 1024;
+
+    private static Picasso sPicasso;
+
+    private NewsImages() {
+    }
+
+    /**
+     * Returns the Picasso instance of the article list.
+     */
+    static synchronized Picasso get(Context context) {
+
+        if (sPicasso == null) {
+
+            Context appContext = context.getApplicationContext();
+            File directory = new File(appContext.getCacheDir(), CACHE_DIR);
+
+            // Shares the connection pool and dispatcher of the API client
+            OkHttpClient client = NewsHttpClient.getInstance().okHttpClient().newBuilder()
+                    .cache(new Cache(directory, diskCacheSize(directory)))
+                    .retryOnConnectionFailure(true)
+                    .eventListener(EventListener.NONE)
+                    .build();
+
+            sPicasso = new Picasso.Builder(appContext)
+                    .memoryCache(new LruCache(memoryCacheSize(appContext)))
+                    .downloader(new OkHttp3Downloader(client))
+                    .build();
+        }
+
+        return sPicasso;
+    }
+
+    private static int memoryCacheSize(Context context) {
+
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClass = am == null ? 16 : am.getMemoryClass();
+
+        return memoryClass * 1024 * 1024 / MEMORY_CACHE_DIVISOR;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long diskCacheSize(File directory) {
+
+        long size = MIN_DISK_CACHE_SIZE;
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Cannot create " + directory);
+            return size;
+        }
+
+        try {
+
+            StatFs statFs = new StatFs(directory.getAbsolutePath());
+            long available = (long) statFs.getAvailableBlocks() * statFs.getBlockSize();
+            size = available / DISK_CACHE_DIVISOR;
+
+        } catch (IllegalArgumentException e) {
+
+            Log.e(LOG_TAG, "Free storage reading problem", e);
+
+        }
+
+        return Math.max(Math.min(size, MAX_DISK_CACHE_SIZE), MIN_DISK_CACHE_SIZE);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.android.newsapp;
+
+/**
+ * A ready-to-bind version of a {@link News} article. All of the text shown by a list item is
+ * computed up front on a background thread by {@link NewsFormatter}, so binding a row only
+ * assigns fields. Away from the visible rows of a long list, {@link NewsWindow} shrinks an item
+ * to a stub holding only its id, title and date, and gives it its text back before it is shown.
+ */
+class NewsItem {
+
+    private final String id;
+
+    private final long stableId;
+
+    private final long publishedMillis;
+
+    private final String title;
+
+    /**
+     * Text of the other fields, null while the item is a stub. Read by the diffing and
+     * snapshot threads, replaced on the main thread.
+     */
+    private volatile Details details;
+
+    /**
+     * Constructs a new {@link NewsItem} object.
+     *
+     * @param id              is the Guardian id of the article
+     * @param stableId        is the 64-bit fingerprint of the id, used as the list item's id
+     * @param publishedMillis is the article's publication date in epoch milliseconds
+     * @param category        is the name of the news category
+     * @param title           is the article's title without the author's name
+     * @param author          is the author's name as published
+     * @param authorLine      is the text of the author field
+     * @param dateLine        is the text of the date field
+     * @param trailText       is the sneak peak text without html tags
+     * @param thumbnailUrl    is the web address of the thumbnail image, or null if there is none
+     * @param articleUrl      is the web address of the article
+     */
+    NewsItem(String id, long stableId, long publishedMillis, String category, String title, String author,
+             String authorLine, String dateLine, String trailText, String thumbnailUrl, String articleUrl) {
+
+        this(id, stableId, publishedMillis, title);
+        this.details = new Details(category, author, authorLine, dateLine, trailText, thumbnailUrl, articleUrl);
+
+    }
+
+    /**
+     * Constructs a stub {@link NewsItem}, whose other fields are null until it is rehydrated.
+     *
+     * @param id              is the Guardian id of the article
+     * @param stableId        is the 64-bit fingerprint of the id, used as the list item's id
+     * @param publishedMillis is the article's publication date in epoch milliseconds
+     * @param title           is the article's title without the author's name
+     */
+    NewsItem(String id, long stableId, long publishedMillis, String title) {
+
+        this.id = id;
+        this.stableId = stableId;
+        this.publishedMillis = publishedMillis;
+        this.title = title;
+
+    }
+
+    /**
+     * Returns whether the item only holds its id, title and date
+     */
+    boolean isStub() {
+        return details == null;
+    }
+
+    /**
+     * Drops the text of the item, keeping its id, title and date. Called on the main thread.
+     */
+    void shrink() {
+        details = null;
+    }
+
+    /**
+     * Gives the item the text of the given item of the same article. Called on the main thread.
+     */
+    void rehydrate(NewsItem full) {
+        if (id.equals(full.id)) {
+            details = full.details;
+        }
+    }
+
+    /**
+     * Returns an item with the current text of this one, shrunk and rehydrated independently
+     * of it
+     */
+    NewsItem copy() {
+        NewsItem copy = new NewsItem(id, stableId, publishedMillis, title);
+        copy.details = details;
+        return copy;
+    }
+
+    /**
+     * Get the Guardian id of the article
+     */
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Get the list item's id, derived from the Guardian id of the article
+     */
+    long getStableId() {
+        return stableId;
+    }
+
+    /**
+     * Get the article's date of publication in epoch milliseconds
+     */
+    long getPublishedMillis() {
+        return publishedMillis;
+    }
+
+    /**
+     * Get the text of the category field, null for a stub
+     */
+    String getCategory() {
+        Details details = this.details;
+        return details == null ? null : details.category;
+    }
+
+    /**
+     * Get the text of the title field
+     */
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the author's name as published, null for a stub
+     */
+    String getArticleAuthor() {
+        Details details = this.details;
+        return details == null ? null : details.author;
+    }
+
+    /**
+     * Get the text of the author field, null for a stub
+     */
+    String getAuthorLine() {
+        Details details = this.details;
+        return details == null ? null : details.authorLine;
+    }
+
+    /**
+     * Get the text of the date field, null for a stub
+     */
+    String getDateLine() {
+        Details details = this.details;
+        return details == null ? null : details.dateLine;
+    }
+
+    /**
+     * Get the text of the trail text field, null for a stub
+     */
+    String getTrailText() {
+        Details details = this.details;
+        return details == null ? null : details.trailText;
+    }
+
+    /**
+     * Get the web address of the thumbnail image, or null if the article has none or for a stub
+     */
+    String getThumbnailUrl() {
+        Details details = this.details;
+        return details == null ? null : details.thumbnailUrl;
+    }
+
+    /**
+     * Get the web address of the article, null for a stub
+     */
+    String getArticleUrl() {
+        Details details = this.details;
+        return details == null ? null : details.articleUrl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        NewsItem other = (NewsItem) o;
+        Details details = this.details;
+
+        // The text of a stub is unknown, so it never has the same content as another item
+        return details != null
+                && stableId == other.stableId
+                && publishedMillis == other.publishedMillis
+                && id.equals(other.id)
+                && Details.equal(title, other.title)
+                && details.equals(other.details);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (stableId ^ (stableId >>> 32));
+    }
+
+    /**
+     * Text of the fields dropped from a stub
+     */
+    private static final class Details {
+
+        private final String category;
+
+        private final String author;
+
+        private final String authorLine;
+
+        private final String dateLine;
+
+        private final String trailText;
+
+        private final String thumbnailUrl;
+
+        private final String articleUrl;
+
+        private Details(String category, String author, String authorLine, String dateLine, String trailText,
+                        String thumbnailUrl, String articleUrl) {
+            this.category = category;
+            this.author = author;
+            this.authorLine = authorLine;
+            this.dateLine = dateLine;
+            this.trailText = trailText;
+            this.thumbnailUrl = thumbnailUrl;
+            this.articleUrl = articleUrl;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Details other = (Details) o;
+
+            // Any field may be missing from the response
+            return equal(category, other.category)
+                    && equal(author, other.author)
+                    && equal(authorLine, other.authorLine)
+                    && equal(dateLine, other.dateLine)
+                    && equal(trailText, other.trailText)
+                    && equal(thumbnailUrl, other.thumbnailUrl)
+                    && equal(articleUrl, other.articleUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            return articleUrl == null ? 0 : articleUrl.hashCode();
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
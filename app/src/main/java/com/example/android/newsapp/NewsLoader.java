@@ -2,33 +2,158 @@ package com.example.android.newsapp;
 
 import android.content.Context;
 import android.content.AsyncTaskLoader;
+import android.os.Handler;
+import android.os.Looper;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Loads a list of articles by using an AsyncTask to perform the
- * network request to the given URL.
+ * network request to the given URLs. The parsed articles are turned into
+ * ready-to-bind {@link NewsItem}s on the same background thread.
+ * When the query is split into one URL per section, the sections are fetched
+ * concurrently and merged, and the merged list is published every time a
+ * section arrives. Keyword searches are answered from the local {@link NewsStore}
+ * first, and the local matches are merged with the remote results. The first page of a
+ * recent query is shown at once from {@link NewsResults}. When nothing is shown yet, the first
+ * page of a single URL is published in growing batches while its response is being parsed.
  */
-class NewsLoader extends AsyncTaskLoader<List<News>> {
+class NewsLoader extends AsyncTaskLoader<List<NewsItem>> {
 
-    /** Query URL */
-    private final String mArticleUrl;
+    /** Maximum number of local matches of a keyword search */
+    private static final int LOCAL_SEARCH_LIMIT = 50;
+
+    /** Query of the list */
+    private final NewsQuery mQuery;
+
+    /** Query URLs, one per section when the query is split by section */
+    private final List<String> mArticleUrls;
+
+    /** Value of the "order-by" parameter of the URLs */
+    private final String mOrderBy;
+
+    /** Result page requested by the URLs */
+    private final int mPage;
+
+    /** Keyword searched in the title, byline and trail text, may be empty */
+    private final String mKeyword;
+
+    /** Publication range of the query, used for the local search */
+    private final long mFromMillis;
+    private final long mToMillis;
+
+    /** Whether cached articles are delivered before the network response */
+    private final boolean mStaleWhileRevalidate;
+
+    /** Whether the load was requested by the user, bypassing fresh results */
+    private final boolean mForceRefresh;
+
+    /** Response cache shared by all loaders */
+    private final NewsCache mCache;
+
+    /** Local article store, used for keyword searches */
+    private final NewsStore mStore;
+
+    /** Coalesced, TTL-bounded requests shared by all loaders */
+    private final NewsRequests mRequests;
+
+    /** First result pages of the recent queries */
+    private final NewsResults mResults;
+
+    /** Whether the first page of the query was shown from {@link #mResults} before loading */
+    private boolean mDeliveredRecent;
+
+    /** Handler used to deliver cached articles from the background thread */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Cancellation of the load running in the background, guarded by this loader */
+    private NewsCancellation mCancellation;
+
+    /** Last intermediate result delivered, only accessed on the main thread */
+    private List<NewsItem> mLastInterim;
+
+    /** Whether {@link #mLastInterim} was read from the network rather than a local copy */
+    private boolean mLastInterimFromNetwork;
 
     /**
      * Constructs a new {@link NewsLoader}.
      *
      * @param context of the activity
-     * @param url to load data from
+     * @param query of the list, its URLs are merged into a single list
+     * @param page result page to load
+     * @param staleWhileRevalidate true to show cached articles while the refresh is running
+     * @param forceRefresh true for an explicit user refresh, which always goes to the network
      */
     @SuppressWarnings("SameParameterValue")
-    NewsLoader(Context context, String url) {
+    NewsLoader(Context context, NewsQuery query, int page, boolean staleWhileRevalidate, boolean forceRefresh) {
         super(context);
-        mArticleUrl = url;
+        mQuery = query;
+        mArticleUrls = query.urls(page);
+        mOrderBy = query.getOrderBy();
+        mPage = page;
+        mKeyword = query.getKeywordSearch();
+        long from = NewsDates.parseDay(query.getFromDate());
+        long to = NewsDates.parseDayEnd(query.getToDate());
+        mFromMillis = from == NewsDates.UNKNOWN ? Long.MIN_VALUE : from;
+        mToMillis = to == NewsDates.UNKNOWN ? Long.MAX_VALUE : to;
+        mStaleWhileRevalidate = staleWhileRevalidate;
+        mForceRefresh = forceRefresh;
+        mCache = NewsCache.getInstance(context);
+        mStore = NewsStore.getInstance(context);
+        mRequests = NewsRequests.getInstance(context);
+        mResults = NewsResults.getInstance(context);
+    }
+
+    /**
+     * Returns whether the delivered articles are an intermediate result (cached articles or
+     * partially merged sections) rather than the final one. Called on the main thread.
+     */
+    boolean isInterim(List<NewsItem> articles) {
+        return articles == mLastInterim;
+    }
+
+    /**
+     * Returns whether the delivered articles are an intermediate result read from the network
+     * (the first articles of a response, or the sections arrived so far) rather than a local
+     * copy. Called on the main thread.
+     */
+    boolean isNetworkInterim(List<NewsItem> articles) {
+        return isInterim(articles) && mLastInterimFromNetwork;
+    }
+
+    /**
+     * Returns the result page this loader fetches
+     */
+    int getPage() {
+        return mPage;
     }
 
     @Override
     protected void onStartLoading() {
+
+        // A recent query is shown right away, and only reloaded once older than the TTL
+        if (mPage == 1 && !mForceRefresh) {
+
+            List<NewsItem> fresh = mResults.getFresh(mQuery);
+
+            if (fresh != null) {
+                deliverResult(fresh);
+                return;
+            }
+
+            List<NewsItem> recent = mStaleWhileRevalidate ? mResults.get(mQuery) : null;
+
+            if (recent != null) {
+                mLastInterim = recent;
+                mLastInterimFromNetwork = false;
+                mDeliveredRecent = true;
+                deliverResult(recent);
+            }
+        }
+
         forceLoad();
     }
 
@@ -36,12 +161,213 @@ class NewsLoader extends AsyncTaskLoader<List<News>> {
      * This is on a background thread.
      */
     @Override
-    public List<News> loadInBackground() {
-        if (mArticleUrl == null) {
+    public List<NewsItem> loadInBackground() {
+
+        NewsCancellation cancellation;
+
+        synchronized (this) {
+            if (isLoadInBackgroundCanceled()) {
+                return Collections.emptyList();
+            }
+            cancellation = new NewsCancellation();
+            mCancellation = cancellation;
+        }
+
+        try {
+            return load(cancellation);
+        } finally {
+            synchronized (this) {
+                mCancellation = null;
+            }
+        }
+    }
+
+    /**
+     * Called on the main thread when the loader is restarted, reset or abandoned while loading.
+     * The request in flight is aborted and its connection closed, and the parse stops at the
+     * next article, instead of completing a result that would be thrown away.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        super.cancelLoadInBackground();
+
+        synchronized (this) {
+            if (mCancellation != null) {
+                mCancellation.cancel();
+            }
+        }
+    }
+
+    // Loads the articles until the cancellation aborts the load
+    private List<NewsItem> load(NewsCancellation cancellation) {
+        if (mArticleUrls == null || mArticleUrls.isEmpty()) {
             return Collections.emptyList();
         }
 
+        NewsFormatter formatter = createFormatter(getContext());
+
+        // Keyword matches among the articles stored locally, only for the first page
+        List<NewsItem> local = Collections.emptyList();
+
+        if (mPage == 1 && !mKeyword.isEmpty()) {
+            local = formatter.format(mStore.search(mKeyword, mQuery.getSections(), mFromMillis, mToMillis,
+                    LOCAL_SEARCH_LIMIT));
+        }
+
+        // Show the stored copy (kept in memory, or on disk after a cold start) while the
+        // network request is running, or the local matches if there is none. Fresh results
+        // are returned right away anyway.
+        boolean showing = mDeliveredRecent;
+
+        if (mStaleWhileRevalidate && !mDeliveredRecent && (mForceRefresh || !mRequests.isFresh(mArticleUrls))) {
+            if (deliverCached(formatter)) {
+                showing = true;
+            } else if (!local.isEmpty()) {
+                deliverInterim(local, false);
+                showing = true;
+            }
+        }
+
         // Perform the network request, parse the response, and extract a list of articles.
-        return NewsUtils.fetchNewsData(mArticleUrl);
+        List<NewsItem> remote;
+
+        if (mArticleUrls.size() == 1 && mPage == 1 && !showing) {
+
+            // A shorter fresh list would replace a stale one being read, so the batches are
+            // only published to an empty screen. Further pages are appended once complete.
+            ProgressiveDelivery progress = new ProgressiveDelivery(formatter);
+            remote = progress.complete(mRequests.fetch(mArticleUrls.get(0), mForceRefresh, progress, cancellation));
+
+        } else if (mArticleUrls.size() == 1) {
+            remote = formatter.format(mRequests.fetch(mArticleUrls.get(0), mForceRefresh, null, cancellation));
+        } else {
+            remote = fetchSections(formatter, cancellation);
+        }
+
+        // The result of a cancelled load is not delivered
+        if (cancellation.isCanceled()) {
+            return Collections.emptyList();
+        }
+
+        List<NewsItem> articles = local.isEmpty() ? remote : NewsMerger.merge(Arrays.asList(remote, local), mOrderBy);
+
+        // Failed requests come back empty and should be retried on the next trigger
+        if (mPage == 1 && !remote.isEmpty()) {
+            mResults.put(mQuery, articles);
+        }
+
+        return articles;
+    }
+
+    // Delivers the merged cached sections if every one of them is stored, returns whether it did
+    private boolean deliverCached(NewsFormatter formatter) {
+
+        List<List<NewsItem>> sections = new ArrayList<>(mArticleUrls.size());
+
+        for (String url : mArticleUrls) {
+
+            List<News> cached = mCache.get(url);
+
+            if (cached == null) {
+                return false;
+            }
+
+            sections.add(formatter.format(cached));
+        }
+
+        deliverInterim(NewsMerger.merge(sections, mOrderBy), false);
+        return true;
+    }
+
+    // Fetches all sections concurrently, publishing the merged list as each one arrives
+    private List<NewsItem> fetchSections(final NewsFormatter formatter, NewsCancellation cancellation) {
+
+        final List<List<NewsItem>> sections = new ArrayList<>(Collections.<List<NewsItem>>nCopies(mArticleUrls.size(), null));
+
+        NewsFanOut.fetchAll(mArticleUrls, mRequests, mForceRefresh, cancellation, new NewsFanOut.Callback() {
+
+            private int mArrived;
+
+            @Override
+            public void onSectionLoaded(int index, List<News> articles) {
+
+                sections.set(index, formatter.format(articles));
+
+                // The last section is returned as the loader's result. Further pages are
+                // appended to the list, so they are only delivered once complete.
+                if (++mArrived < mArticleUrls.size() && mPage == 1) {
+                    deliverInterim(NewsMerger.merge(sections, mOrderBy), true);
+                }
+            }
+        });
+
+        return NewsMerger.merge(sections, mOrderBy);
+    }
+
+    /**
+     * Formats the articles parsed so far and publishes them, keeping the formatted rows so
+     * that every batch and the final result share them. The adapter then sees the rows already
+     * shown as unchanged and only inserts the new ones.
+     */
+    private class ProgressiveDelivery implements NewsUtils.ParseListener {
+
+        private final NewsFormatter mFormatter;
+
+        private final List<NewsItem> mFormatted = new ArrayList<>();
+
+        private ProgressiveDelivery(NewsFormatter formatter) {
+            mFormatter = formatter;
+        }
+
+        @Override
+        public void onArticlesParsed(List<News> articles) {
+
+            if (isLoadInBackgroundCanceled()) {
+                return;
+            }
+
+            mFormatted.addAll(mFormatter.format(articles.subList(mFormatted.size(), articles.size())));
+            deliverInterim(new ArrayList<>(mFormatted), true);
+        }
+
+        // Returns the formatted result, reusing the rows of the published batches
+        private List<NewsItem> complete(List<News> articles) {
+
+            // A cached or shared result was returned instead of the parsed response
+            if (mFormatted.isEmpty() || articles.size() < mFormatted.size()
+                    || !articles.get(mFormatted.size() - 1).getId().equals(mFormatted.get(mFormatted.size() - 1).getId())) {
+                return mFormatter.format(articles);
+            }
+
+            List<NewsItem> items = new ArrayList<>(articles.size());
+            items.addAll(mFormatted);
+            items.addAll(mFormatter.format(articles.subList(mFormatted.size(), articles.size())));
+
+            return items;
+        }
+    }
+
+    /**
+     * Returns a formatter using the app's string resources
+     */
+    static NewsFormatter createFormatter(Context context) {
+        return new NewsFormatter(context.getString(R.string.writtenBy),
+                context.getString(R.string.publishedOn),
+                context.getString(R.string.dots),
+                context.getString(R.string.output_format));
+    }
+
+    // Posts an intermediate result to the main thread while the load is still running
+    private void deliverInterim(final List<NewsItem> articles, final boolean fromNetwork) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isStarted() && !isAbandoned()) {
+                    mLastInterim = articles;
+                    mLastInterimFromNetwork = fromNetwork;
+                    deliverResult(articles);
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,131 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the article lists of several sections into a single list in the order requested
+ * from the API. Every section list is already in that order, so the lists are merged with
+ * a k-way merge over a heap of section cursors instead of being concatenated and sorted.
+ */
+final class NewsMerger {
+
+    /**
+     * Values of the "order-by" parameter sorting by publication date
+     */
+    static final String ORDER_NEWEST = "newest";
+    static final String ORDER_OLDEST = "oldest";
+
+    private static final Comparator<Cursor> NEWEST_FIRST = new Comparator<Cursor>() {
+        @Override
+        public int compare(Cursor a, Cursor b) {
+            int byDate = compareValues(b.current().getPublishedMillis(), a.current().getPublishedMillis());
+            return byDate != 0 ? byDate : compareValues(a.section, b.section);
+        }
+    };
+
+    private static final Comparator<Cursor> OLDEST_FIRST = new Comparator<Cursor>() {
+        @Override
+        public int compare(Cursor a, Cursor b) {
+            int byDate = compareValues(a.current().getPublishedMillis(), b.current().getPublishedMillis());
+            return byDate != 0 ? byDate : compareValues(a.section, b.section);
+        }
+    };
+
+    /**
+     * Relevance scores are not part of the response, so sections are interleaved by rank
+     */
+    private static final Comparator<Cursor> BY_RANK = new Comparator<Cursor>() {
+        @Override
+        public int compare(Cursor a, Cursor b) {
+            int byRank = compareValues(a.index, b.index);
+            return byRank != 0 ? byRank : compareValues(a.section, b.section);
+        }
+    };
+
+    private NewsMerger() {
+    }
+
+    // Long.compare and Integer.compare need API 19, ints are widened
+    private static int compareValues(long x, long y) {
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    /**
+     * Returns the articles of all the given lists in the given order. Null lists (sections
+     * that have not arrived yet) are skipped, and an article found in several lists (e.g. in
+     * both the local and the remote results) is only kept once.
+     *
+     * @param sections article lists, each one already in the given order
+     * @param orderBy  value of the "order-by" parameter the lists were requested with
+     */
+    static List<NewsItem> merge(List<List<NewsItem>> sections, String orderBy) {
+
+        Comparator<Cursor> comparator;
+
+        if (ORDER_NEWEST.equals(orderBy)) {
+            comparator = NEWEST_FIRST;
+        } else if (ORDER_OLDEST.equals(orderBy)) {
+            comparator = OLDEST_FIRST;
+        } else {
+            comparator = BY_RANK;
+        }
+
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, sections.size()), comparator);
+        int total = 0;
+
+        for (int i = 0; i < sections.size(); i++) {
+
+            List<NewsItem> section = sections.get(i);
+
+            if (section != null && !section.isEmpty()) {
+                heap.add(new Cursor(section, i));
+                total += section.size();
+            }
+        }
+
+        List<NewsItem> merged = new ArrayList<>(total);
+        Set<String> ids = new HashSet<>(total * 2);
+
+        while (!heap.isEmpty()) {
+
+            Cursor cursor = heap.poll();
+
+            if (ids.add(cursor.current().getId())) {
+                merged.add(cursor.current());
+            }
+
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+
+        return merged;
+    }
+
+    private static class Cursor {
+
+        private final List<NewsItem> list;
+
+        private final int section;
+
+        private int index;
+
+        private Cursor(List<NewsItem> list, int section) {
+            this.list = list;
+            this.section = section;
+        }
+
+        private NewsItem current() {
+            return list.get(index);
+        }
+
+        private boolean advance() {
+            return ++index < list.size();
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process metrics of the fetch and display pipeline: latency histograms of every phase of
+ * a request and of the adapter's binds, byte counters and the response codes received.
+ * Recording a value only updates atomics in preallocated arrays, so the instrumentation
+ * does not allocate and stays enabled in release builds. Reports are built on demand by the
+ * debug screen ({@link MetricsActivity}).
+ */
+final class NewsMetrics {
+
+    /**
+     * Latency of every phase of a request, and of binding a row
+     */
+    static final Histogram CONNECT = new Histogram("connect");
+    static final Histogram TIME_TO_FIRST_BYTE = new Histogram("time_to_first_byte");
+    static final Histogram DOWNLOAD = new Histogram("download");
+    static final Histogram PARSE = new Histogram("parse");
+    static final Histogram BIND = new Histogram("bind");
+
+    private static final Histogram[] HISTOGRAMS = {CONNECT, TIME_TO_FIRST_BYTE, DOWNLOAD, PARSE, BIND};
+
+    /**
+     * Volume of the responses, requests that failed before a response code was received,
+     * retried attempts, requests rejected by the circuit breaker and cancelled requests
+     */
+    static final Counter WIRE_BYTES = new Counter("wire_bytes");
+    static final Counter DECODED_BYTES = new Counter("decoded_bytes");
+    static final Counter IO_ERRORS = new Counter("io_errors");
+    static final Counter RETRIES = new Counter("retries");
+    static final Counter CIRCUIT_REJECTIONS = new Counter("circuit_rejections");
+    static final Counter CANCELLATIONS = new Counter("cancellations");
+
+    /**
+     * Titles and trail texts bound with a layout built ahead of time, and laid out while binding
+     */
+    static final Counter TEXT_LAYOUT_HITS = new Counter("text_layout_hits");
+    static final Counter TEXT_LAYOUT_MISSES = new Counter("text_layout_misses");
+
+    private static final Counter[] COUNTERS = {WIRE_BYTES, DECODED_BYTES, IO_ERRORS, RETRIES, CIRCUIT_REJECTIONS,
+            CANCELLATIONS, TEXT_LAYOUT_HITS, TEXT_LAYOUT_MISSES};
+
+    /**
+     * Number of responses received per HTTP response code
+     */
+    private static final int MAX_RESPONSE_CODE = 600;
+    private static final AtomicLongArray RESPONSE_CODES = new AtomicLongArray(MAX_RESPONSE_CODE);
+
+    private NewsMetrics() {
+    }
+
+    /**
+     * Counts a response with the given HTTP response code.
+     */
+    static void recordResponseCode(int code) {
+        if (code >= 0 && code < MAX_RESPONSE_CODE) {
+            RESPONSE_CODES.incrementAndGet(code);
+        }
+    }
+
+    /**
+     * Returns a human-readable report of all the metrics.
+     */
+    static String report() {
+
+        StringBuilder report = new StringBuilder();
+
+        for (Histogram histogram : HISTOGRAMS) {
+            report.append(String.format(Locale.US, "%s: n=%d mean=%.1fms p50<%.1fms p95<%.1fms p99<%.1fms max=%.1fms%n",
+                    histogram.name, histogram.count(), millis(histogram.meanMicros()),
+                    millis(histogram.percentileMicros(0.5)), millis(histogram.percentileMicros(0.95)),
+                    millis(histogram.percentileMicros(0.99)), millis(histogram.maxMicros())));
+        }
+
+        for (Counter counter : COUNTERS) {
+            report.append(counter.name).append(": ").append(counter.get()).append('\n');
+        }
+
+        for (int code = 0; code < MAX_RESPONSE_CODE; code++) {
+            long count = RESPONSE_CODES.get(code);
+            if (count > 0) {
+                report.append("HTTP ").append(code).append(": ").append(count).append('\n');
+            }
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Returns all the metrics as JSON, e.g. to be attached to a performance bug.
+     */
+    static JSONObject toJson() throws JSONException {
+
+        JSONObject json = new JSONObject();
+
+        for (Histogram histogram : HISTOGRAMS) {
+
+            JSONArray buckets = new JSONArray();
+
+            for (int i = 0; i < Histogram.BUCKETS; i++) {
+                buckets.put(histogram.buckets.get(i));
+            }
+
+            json.put(histogram.name, new JSONObject()
+                    .put("count", histogram.count())
+                    .put("sum_us", histogram.sumMicros.get())
+                    .put("max_us", histogram.maxMicros())
+                    .put("p50_us", histogram.percentileMicros(0.5))
+                    .put("p95_us", histogram.percentileMicros(0.95))
+                    .put("p99_us", histogram.percentileMicros(0.99))
+                    .put("buckets", buckets));
+        }
+
+        for (Counter counter : COUNTERS) {
+            json.put(counter.name, counter.get());
+        }
+
+        JSONObject codes = new JSONObject();
+
+        for (int code = 0; code < MAX_RESPONSE_CODE; code++) {
+            long count = RESPONSE_CODES.get(code);
+            if (count > 0) {
+                codes.put(String.valueOf(code), count);
+            }
+        }
+
+        json.put("response_codes", codes);
+
+        return json;
+    }
+
+    /**
+     * Clears all the metrics.
+     */
+    static void reset() {
+
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+
+        for (Counter counter : COUNTERS) {
+            counter.value.set(0);
+        }
+
+        for (int code = 0; code < MAX_RESPONSE_CODE; code++) {
+            RESPONSE_CODES.set(code, 0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Monotonic counter.
+     */
+    static final class Counter {
+
+        private final String name;
+
+        private final AtomicLong value = new AtomicLong();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        void increment() {
+            value.incrementAndGet();
+        }
+
+        long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Latency histogram with power-of-two microsecond buckets: bucket 0 counts values below
+     * 1 us and bucket i values in [2^(i-1), 2^i) us, the last one everything above ~18 minutes.
+     * Percentiles are reported as the upper bound of their bucket, i.e. within a factor of two.
+     */
+    static final class Histogram {
+
+        private static final int BUCKETS = 32;
+
+        private final String name;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong sumMicros = new AtomicLong();
+
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records a duration measured with {@link System#nanoTime()}.
+         */
+        void recordNanos(long nanos) {
+
+            long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+
+            buckets.incrementAndGet(bucket(micros));
+            sumMicros.addAndGet(micros);
+
+            long max = maxMicros.get();
+
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+        }
+
+        /**
+         * Records the time elapsed since the given {@link System#nanoTime()}.
+         */
+        void recordSince(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        long count() {
+
+            long count = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+
+            return count;
+        }
+
+        long meanMicros() {
+            long count = count();
+            return count == 0 ? 0 : sumMicros.get() / count;
+        }
+
+        long maxMicros() {
+            return maxMicros.get();
+        }
+
+        /**
+         * Returns the upper bound of the bucket holding the given percentile, or 0 if
+         * nothing was recorded.
+         */
+        long percentileMicros(double percentile) {
+
+            long count = count();
+
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKETS; i++) {
+
+                seen += buckets.get(i);
+
+                if (seen >= rank) {
+                    return Math.min(1L << i, maxMicros.get());
+                }
+            }
+
+            return maxMicros.get();
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            sumMicros.set(0);
+            maxMicros.set(0);
+        }
+
+        private static int bucket(long micros) {
+            return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        }
+    }
+
+    /**
+     * Response stream measuring the time spent waiting for the network, so that the download
+     * and the parse running on top of it can be told apart.
+     */
+    static final class TimedInputStream extends FilterInputStream {
+
+        private long mNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Returns the time spent in the wrapped stream's reads.
+         */
+        long getNanos() {
+            return mNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                mNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                mNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.skip(n);
+            } finally {
+                mNanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.android.newsapp;
+
+import android.os.Bundle;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps track of which Guardian result pages are currently held by the adapter.
+ * Decides when the next (or previous) page should be prefetched while the list is
+ * scrolled, and caps the number of pages kept in memory by dropping the pages
+ * furthest away from the visible rows.
+ */
+class NewsPager {
+
+    /**
+     * Value returned when no page should be loaded
+     */
+    static final int NO_PAGE = -1;
+
+    /**
+     * Number of rows from either end of the list at which the neighbouring page is fetched
+     */
+    private static final int PREFETCH_DISTANCE = 5;
+
+    /**
+     * Maximum number of pages held by the adapter at the same time
+     */
+    private static final int MAX_PAGES_IN_MEMORY = 5;
+
+    /**
+     * Keys of the saved state
+     */
+    private static final String STATE_PAGE_COUNTS = "pager_page_counts";
+    private static final String STATE_FIRST_PAGE = "pager_first_page";
+    private static final String STATE_PAGE_SIZE = "pager_page_size";
+    private static final String STATE_LAST_PAGE_REACHED = "pager_last_page_reached";
+
+    /**
+     * Number of articles of every page held by the adapter, in list order
+     */
+    private final ArrayDeque<Integer> mPageCounts = new ArrayDeque<>();
+
+    private int mFirstPage;
+
+    private int mLastPage;
+
+    private int mPageSize;
+
+    private boolean mLastPageReached;
+
+    private int mLoadingPage = NO_PAGE;
+
+    /**
+     * Starts over with the given first page.
+     *
+     * @param count    number of articles in the first page
+     * @param pageSize number of articles requested per page
+     */
+    void reset(int count, int pageSize) {
+        mPageCounts.clear();
+        mPageCounts.add(count);
+        mFirstPage = 1;
+        mLastPage = 1;
+        mPageSize = pageSize;
+        mLastPageReached = count < pageSize;
+        mLoadingPage = NO_PAGE;
+    }
+
+    /**
+     * Returns the page that should be fetched for the given scroll state, or {@link #NO_PAGE}.
+     */
+    int pageToPrefetch(int firstVisible, int visibleCount, int totalCount) {
+
+        if (mLoadingPage != NO_PAGE || mPageCounts.isEmpty()) {
+            return NO_PAGE;
+        }
+
+        if (!mLastPageReached && firstVisible + visibleCount >= totalCount - PREFETCH_DISTANCE) {
+            mLoadingPage = mLastPage + 1;
+        } else if (mFirstPage > 1 && firstVisible <= PREFETCH_DISTANCE) {
+            mLoadingPage = mFirstPage - 1;
+        }
+
+        return mLoadingPage;
+    }
+
+    /**
+     * Returns true if the page is neither held by the adapter nor adjacent to it,
+     * e.g. a result delivered again by a retained loader.
+     */
+    boolean isStale(int page) {
+        return page != mLastPage + 1 && page != mFirstPage - 1;
+    }
+
+    /**
+     * Returns true if the page follows the last page held by the adapter.
+     */
+    boolean isAppend(int page) {
+        return page == mLastPage + 1;
+    }
+
+    /**
+     * Records a page appended at the end of the list.
+     *
+     * @return number of articles to drop from the start of the list
+     */
+    int onPageAppended(int count) {
+
+        mLoadingPage = NO_PAGE;
+
+        if (count == 0) {
+            mLastPageReached = true;
+            return 0;
+        }
+
+        mPageCounts.addLast(count);
+        mLastPage++;
+        mLastPageReached = count < mPageSize;
+
+        if (mPageCounts.size() > MAX_PAGES_IN_MEMORY) {
+            mFirstPage++;
+            return mPageCounts.removeFirst();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Records a page inserted at the start of the list.
+     *
+     * @return number of articles to drop from the end of the list
+     */
+    int onPagePrepended(int count) {
+
+        mLoadingPage = NO_PAGE;
+        mPageCounts.addFirst(count);
+        mFirstPage--;
+
+        if (mPageCounts.size() > MAX_PAGES_IN_MEMORY) {
+            mLastPage--;
+            mLastPageReached = false;
+            return mPageCounts.removeLast();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Forgets the page being loaded so it can be requested again.
+     */
+    void onPageFailed() {
+        mLoadingPage = NO_PAGE;
+    }
+
+    /**
+     * Saves the pages held by the adapter, to be restored with the list after the process
+     * has been killed.
+     */
+    void onSaveInstanceState(Bundle outState) {
+
+        int[] counts = new int[mPageCounts.size()];
+        int i = 0;
+
+        for (int count : mPageCounts) {
+            counts[i++] = count;
+        }
+
+        outState.putIntArray(STATE_PAGE_COUNTS, counts);
+        outState.putInt(STATE_FIRST_PAGE, mFirstPage);
+        outState.putInt(STATE_PAGE_SIZE, mPageSize);
+        outState.putBoolean(STATE_LAST_PAGE_REACHED, mLastPageReached);
+    }
+
+    /**
+     * Restores the pages saved by {@link #onSaveInstanceState(Bundle)}, returns false if
+     * the state holds none.
+     */
+    boolean onRestoreInstanceState(Bundle state) {
+
+        int[] counts = state.getIntArray(STATE_PAGE_COUNTS);
+
+        if (counts == null || counts.length == 0) {
+            return false;
+        }
+
+        mPageCounts.clear();
+
+        for (int count : counts) {
+            mPageCounts.add(count);
+        }
+
+        mFirstPage = state.getInt(STATE_FIRST_PAGE, 1);
+        mLastPage = mFirstPage + counts.length - 1;
+        mPageSize = state.getInt(STATE_PAGE_SIZE, NewsQuery.DEFAULT_PAGE_SIZE);
+        mLastPageReached = state.getBoolean(STATE_LAST_PAGE_REACHED);
+        mLoadingPage = NO_PAGE;
+
+        return true;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable query of the article list as set in the settings screen, and the Guardian API URLs
+ * it is sent to. Read by the activity's loaders and by the background sync, so both fetch
+ * exactly the same URLs. Values are normalized (trimmed, sections sorted, empty values dropped)
+ * and parameters are always sent in the same order, so equal settings give equal URLs and an
+ * equal {@link #key()}.
+ */
+final class NewsQuery {
+
+    /**
+     * URL for news data from the the Guardian dataset
+     */
+    private static final String GUARDIAN_REQUEST_URL =
+            "https://content.guardianapis.com/search";
+
+    private static final String API_KEY = "6564320b-a05d-4650-9396-17c26f5f3582";
+
+    /**
+     * Number of results returned by the Guardian API when no page size is given
+     */
+    static final int DEFAULT_PAGE_SIZE = 10;
+
+    /**
+     * Separator of the sections of the "section" parameter
+     */
+    private static final String SECTION_SEPARATOR = "|";
+
+    /**
+     * Whether only the fields displayed by the list are requested, instead of all of them
+     * together with the contributor tags
+     */
+    private static final boolean PROJECTED_TRANSPORT = true;
+
+    /**
+     * Whether a query for several sections is split into concurrent per-section requests
+     */
+    private static final boolean SECTION_FAN_OUT = true;
+
+    /**
+     * Web address of the search endpoint, the Guardian's outside of tests
+     */
+    private final String mBaseUrl;
+
+    private final SortedSet<String> mSections;
+
+    private final String mFromDate;
+
+    private final String mToDate;
+
+    private final String mKeywordSearch;
+
+    private final String mOrderBy;
+
+    private final int mPageSize;
+
+    /**
+     * Parameters chosen by the user, sorted by name, without the page
+     */
+    private final SortedMap<String, String> mParameters;
+
+    private final String mKey;
+
+    /**
+     * Constructs a new {@link NewsQuery}, normalizing the values as read from the settings.
+     *
+     * @param sections      names of the sections, may be null for all sections
+     * @param fromDate      first publication day as "yyyy-MM-dd", may be empty
+     * @param toDate        last publication day as "yyyy-MM-dd", may be empty
+     * @param keywordSearch searched keyword, may be empty
+     * @param orderBy       value of the "order-by" parameter
+     * @param pageSize      number of results per page, the API's default if empty or not a number
+     */
+    NewsQuery(Set<String> sections, String fromDate, String toDate, String keywordSearch,
+              String orderBy, String pageSize) {
+        this(GUARDIAN_REQUEST_URL, sections, fromDate, toDate, keywordSearch, orderBy, pageSize);
+    }
+
+    /**
+     * Constructs a new {@link NewsQuery} sent to another search endpoint, e.g. a local stand-in
+     * for the Guardian API.
+     */
+    NewsQuery(String baseUrl, Set<String> sections, String fromDate, String toDate, String keywordSearch,
+              String orderBy, String pageSize) {
+
+        mBaseUrl = baseUrl;
+
+        SortedSet<String> sectionSet = new TreeSet<>();
+
+        if (sections != null) {
+            for (String section : sections) {
+                if (section != null && !section.trim().isEmpty()) {
+                    sectionSet.add(section.trim());
+                }
+            }
+        }
+
+        mSections = Collections.unmodifiableSortedSet(sectionSet);
+        mFromDate = trim(fromDate);
+        mToDate = trim(toDate);
+        mKeywordSearch = trim(keywordSearch);
+        mOrderBy = trim(orderBy);
+        mPageSize = parsePageSize(trim(pageSize));
+
+        SortedMap<String, String> parameters = new TreeMap<>();
+
+        put(parameters, "from-date", mFromDate);
+        put(parameters, "to-date", mToDate);
+        put(parameters, "q", mKeywordSearch);
+        put(parameters, "order-by", mOrderBy);
+        put(parameters, "section", join(mSections));
+
+        if (mPageSize != DEFAULT_PAGE_SIZE) {
+            parameters.put("page-size", String.valueOf(mPageSize));
+        }
+
+        mParameters = Collections.unmodifiableSortedMap(parameters);
+
+        // The key only depends on the normalized values, e.g. "order-by=newest&q=news&section=sport"
+        StringBuilder key = new StringBuilder();
+
+        if (!GUARDIAN_REQUEST_URL.equals(baseUrl)) {
+            key.append(baseUrl).append('?');
+        }
+
+        for (Map.Entry<String, String> parameter : mParameters.entrySet()) {
+            if (key.length() > 0 && key.charAt(key.length() - 1) != '?') {
+                key.append('&');
+            }
+            key.append(parameter.getKey()).append('=').append(Uri.encode(parameter.getValue()));
+        }
+
+        mKey = key.toString();
+    }
+
+    /**
+     * Returns the query currently saved in the settings.
+     */
+    static NewsQuery read(Context context) {
+
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        Set<String> sectionValues = sharedPrefs.getStringSet(context.getString(R.string.settings_section_key), null);
+
+        String fromDate = sharedPrefs.getString(
+                context.getString(R.string.settings_from_date_key),
+                context.getString(R.string.settings_from_date_default));
+
+        String toDate = sharedPrefs.getString(
+                context.getString(R.string.settings_to_date_key),
+                context.getString(R.string.settings_to_date_default));
+
+        String keywordSearch = sharedPrefs.getString(
+                context.getString(R.string.settings_keyword_search_key),
+                context.getString(R.string.settings_keyword_search_default));
+
+        String orderBy = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default));
+
+        String pageSize = sharedPrefs.getString(
+                context.getString(R.string.settings_page_size_key),
+                context.getString(R.string.settings_page_size_default));
+
+        return new NewsQuery(sectionValues, fromDate, toDate, keywordSearch, orderBy, pageSize);
+    }
+
+    /**
+     * Returns a text identifying the query: equal for queries returning the same articles,
+     * whatever the order in which the settings were made.
+     */
+    String key() {
+        return mKey;
+    }
+
+    /**
+     * Returns the ids of the sections, empty for all sections
+     */
+    Set<String> getSections() {
+        return mSections;
+    }
+
+    String getFromDate() {
+        return mFromDate;
+    }
+
+    String getToDate() {
+        return mToDate;
+    }
+
+    String getKeywordSearch() {
+        return mKeywordSearch;
+    }
+
+    String getOrderBy() {
+        return mOrderBy;
+    }
+
+    /**
+     * Returns the number of results per page
+     */
+    int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Returns the URLs of the given result page, one per section when the query is split
+     * by section.
+     */
+    List<String> urls(int page) {
+
+        SortedMap<String, String> parameters = new TreeMap<>(mParameters);
+
+        parameters.put("api-key", API_KEY);
+        parameters.put("format", "json");
+        parameters.put("page", String.valueOf(page));
+        parameters.put("use-date", "published");
+
+        if (PROJECTED_TRANSPORT) {
+            parameters.put("show-fields", NewsUtils.DISPLAYED_FIELDS);
+        } else {
+            parameters.put("show-fields", "all");
+            parameters.put("show-tags", "contributor");
+        }
+
+        List<String> urls = new ArrayList<>();
+
+        // Each section gets its own request, fetched and cached separately
+        if (SECTION_FAN_OUT && mSections.size() > 1) {
+
+            for (String section : mSections) {
+                parameters.put("section", section);
+                urls.add(url(parameters));
+            }
+
+        } else {
+
+            urls.add(url(parameters));
+
+        }
+
+        return urls;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NewsQuery && mKey.equals(((NewsQuery) o).mKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return mKey.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return mKey;
+    }
+
+    // Returns the URL of the given parameters, in their sorted order
+    private String url(SortedMap<String, String> parameters) {
+
+        Uri.Builder uriBuilder = Uri.parse(mBaseUrl).buildUpon();
+
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            uriBuilder.appendQueryParameter(parameter.getKey(), parameter.getValue());
+        }
+
+        return uriBuilder.toString();
+    }
+
+    // Returns the page size sent to the API, or the API's default if it is not a valid number
+    private static int parsePageSize(String pageSize) {
+
+        try {
+
+            return pageSize.isEmpty() ? DEFAULT_PAGE_SIZE : Math.max(1, Integer.parseInt(pageSize));
+
+        } catch (NumberFormatException e) {
+
+            return DEFAULT_PAGE_SIZE;
+
+        }
+    }
+
+    private static String join(SortedSet<String> sections) {
+
+        StringBuilder joined = new StringBuilder();
+
+        for (String section : sections) {
+            if (joined.length() > 0) {
+                joined.append(SECTION_SEPARATOR);
+            }
+            joined.append(section);
+        }
+
+        return joined.toString();
+    }
+
+    // Adds a parameter unless its value is empty, the API treats both alike
+    private static void put(Map<String, String> parameters, String name, String value) {
+        if (!value.isEmpty()) {
+            parameters.put(name, value);
+        }
+    }
+
+    private static String trim(String value) {
+        return value == null ? "" : value.trim();
+    }
+}
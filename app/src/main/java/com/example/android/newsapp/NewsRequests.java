@@ -0,0 +1,242 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sits in front of {@link NewsUtils#fetchNewsData(String, NewsCache)} for every refresh trigger
+ * (activity start, resume, swipe and the refresh action). Identical requests that are in flight
+ * at the same time share one network call, and results younger than the freshness TTL are
+ * served from memory. Only an explicit user refresh bypasses the TTL. Every downloaded result
+ * is also copied to the {@link NewsStore} for offline keyword searches.
+ */
+class NewsRequests {
+
+    private static final String LOG_TAG = NewsRequests.class.getSimpleName();
+
+    /**
+     * Number of fresh results kept in memory
+     */
+    private static final int MAX_FRESH_ENTRIES = 16;
+
+    /**
+     * Interval at which a caller waiting for another one's request checks its cancellation
+     */
+    private static final long CANCEL_CHECK_MILLIS = 50;
+
+    private static NewsRequests sInstance;
+
+    private final NewsCache mCache;
+
+    private final NewsStore mStore;
+
+    private final long mTtlMillis;
+
+    private final ConcurrentHashMap<String, FutureTask<List<News>>> mInFlight = new ConcurrentHashMap<>();
+
+    private final LruCache<String, Fresh> mFresh = new LruCache<>(MAX_FRESH_ENTRIES);
+
+    /**
+     * Returns the instance shared by all loaders, using the TTL configured in resources.
+     */
+    static synchronized NewsRequests getInstance(Context context) {
+        if (sInstance == null) {
+            long ttl = TimeUnit.SECONDS.toMillis(context.getResources().getInteger(R.integer.freshness_ttl_seconds));
+            sInstance = new NewsRequests(NewsCache.getInstance(context), NewsStore.getInstance(context), ttl);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link NewsRequests}.
+     *
+     * @param cache     of the responses, used for conditional requests
+     * @param store     of the articles, updated with every downloaded result
+     * @param ttlMillis time during which a result is served without a network call
+     */
+    NewsRequests(NewsCache cache, NewsStore store, long ttlMillis) {
+        mCache = cache;
+        mStore = store;
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns true if a result younger than the TTL is held for every URL.
+     */
+    boolean isFresh(List<String> urls) {
+
+        for (String url : urls) {
+            if (fresh(url) == null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the articles of the URL. Blocks while the request is running, either in this
+     * thread or in another one that asked for the same URL first.
+     *
+     * @param url          to load data from
+     * @param forceRefresh true for an explicit user refresh, which ignores fresh results
+     */
+    List<News> fetch(String url, boolean forceRefresh) {
+        return fetch(url, forceRefresh, null);
+    }
+
+    /**
+     * Returns the articles of the URL, publishing them in batches to the given listener while
+     * they are parsed. Only a caller starting the request receives the batches, one sharing
+     * another caller's request only gets the result.
+     *
+     * @param url          to load data from
+     * @param forceRefresh true for an explicit user refresh, which ignores fresh results
+     * @param listener     receiving the articles parsed so far, may be null
+     */
+    List<News> fetch(String url, boolean forceRefresh, NewsUtils.ParseListener listener) {
+        return fetch(url, forceRefresh, listener, new NewsCancellation());
+    }
+
+    /**
+     * Returns the articles of the URL until the given cancellation aborts the request, and an
+     * empty list once it did. A caller sharing the request of a cancelled one sends it again.
+     *
+     * @param url          to load data from
+     * @param forceRefresh true for an explicit user refresh, which ignores fresh results
+     * @param listener     receiving the articles parsed so far, may be null
+     * @param cancellation aborting the request of this caller
+     */
+    List<News> fetch(final String url, boolean forceRefresh, final NewsUtils.ParseListener listener,
+                     final NewsCancellation cancellation) {
+
+        if (!forceRefresh) {
+            List<News> fresh = fresh(url);
+            if (fresh != null) {
+                return fresh;
+            }
+        }
+
+        while (!cancellation.isCanceled()) {
+
+            // Returns null once cancelled, telling the callers sharing it apart from a failure
+            FutureTask<List<News>> task = new FutureTask<>(new Callable<List<News>>() {
+                @Override
+                public List<News> call() {
+
+                    List<News> articles = NewsUtils.fetchNewsData(url, mCache, listener, cancellation);
+
+                    if (cancellation.isCanceled()) {
+                        return null;
+                    }
+
+                    // Failed requests come back empty and should be retried on the next trigger
+                    if (!articles.isEmpty()) {
+                        mFresh.put(url, new Fresh(articles, SystemClock.elapsedRealtime()));
+                        mStore.putAllAsync(articles);
+                    }
+
+                    return articles;
+                }
+            });
+
+            FutureTask<List<News>> running = mInFlight.putIfAbsent(url, task);
+
+            if (running == null) {
+                running = task;
+                try {
+                    task.run();
+                } finally {
+                    mInFlight.remove(url, task);
+                }
+            }
+
+            List<News> articles = await(running, cancellation);
+
+            if (articles != null) {
+                return articles;
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    // Returns the result of the request, or null if it or this caller was cancelled
+    private static List<News> await(FutureTask<List<News>> running, NewsCancellation cancellation) {
+
+        try {
+
+            // Another caller's request is not cancelled with this one, which only stops waiting
+            while (!cancellation.isCanceled()) {
+                try {
+                    return running.get(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Still running
+                }
+            }
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            cancellation.cancel();
+
+        } catch (ExecutionException e) {
+
+            Log.e(LOG_TAG, "Shared request problem", e);
+            return Collections.emptyList();
+
+        }
+
+        return null;
+    }
+
+    // Returns the articles fetched less than the TTL ago, or null. Responses stored on disk by
+    // another process (e.g. the background sync before a cold start) count as well.
+    private List<News> fresh(String url) {
+
+        Fresh fresh = mFresh.get(url);
+
+        if (fresh != null && SystemClock.elapsedRealtime() - fresh.fetchedAt < mTtlMillis) {
+            return fresh.articles;
+        }
+
+        long age = System.currentTimeMillis() - mCache.validatedAt(url);
+
+        if (age < 0 || age >= mTtlMillis) {
+            return null;
+        }
+
+        List<News> stored = mCache.get(url);
+
+        if (stored == null || stored.isEmpty()) {
+            return null;
+        }
+
+        mFresh.put(url, new Fresh(stored, SystemClock.elapsedRealtime() - age));
+
+        return stored;
+    }
+
+    private static class Fresh {
+
+        private final List<News> articles;
+
+        private final long fetchedAt;
+
+        private Fresh(List<News> articles, long fetchedAt) {
+            this.articles = articles;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
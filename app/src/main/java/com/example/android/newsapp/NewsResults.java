@@ -0,0 +1,89 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First result pages of the most recent queries, ready to bind and keyed by
+ * {@link NewsQuery#key()}. Switching the settings back to a recent combination of order,
+ * sections and dates shows its list at once, without a network call while it is younger
+ * than the freshness TTL.
+ */
+class NewsResults {
+
+    /**
+     * Number of queries whose results are kept in memory
+     */
+    private static final int MAX_QUERIES = 8;
+
+    private static NewsResults sInstance;
+
+    private final long mTtlMillis;
+
+    private final LruCache<String, Result> mResults = new LruCache<>(MAX_QUERIES);
+
+    /**
+     * Returns the instance shared by all loaders, using the TTL configured in resources.
+     */
+    static synchronized NewsResults getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NewsResults(TimeUnit.SECONDS.toMillis(
+                    context.getResources().getInteger(R.integer.freshness_ttl_seconds)));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Constructs a new {@link NewsResults}.
+     *
+     * @param ttlMillis time during which a result is shown without a network call
+     */
+    NewsResults(long ttlMillis) {
+        mTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the first result page of the query, or null if it is not held.
+     */
+    List<NewsItem> get(NewsQuery query) {
+        Result result = mResults.get(query.key());
+        return result == null ? null : result.articles;
+    }
+
+    /**
+     * Returns the first result page of the query if it was loaded less than the TTL ago, or null.
+     */
+    List<NewsItem> getFresh(NewsQuery query) {
+
+        Result result = mResults.get(query.key());
+
+        if (result == null || SystemClock.elapsedRealtime() - result.loadedAt >= mTtlMillis) {
+            return null;
+        }
+
+        return result.articles;
+    }
+
+    /**
+     * Keeps the first result page of the query, replacing the previous one.
+     */
+    void put(NewsQuery query, List<NewsItem> articles) {
+        mResults.put(query.key(), new Result(articles, SystemClock.elapsedRealtime()));
+    }
+
+    private static class Result {
+
+        private final List<NewsItem> articles;
+
+        private final long loadedAt;
+
+        private Result(List<NewsItem> articles, long loadedAt) {
+            this.articles = articles;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
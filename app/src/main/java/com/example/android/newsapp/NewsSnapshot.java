@@ -0,0 +1,308 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Last article list shown by the activity, stored already formatted so that a cold start can
+ * bind it on the first frame, before any loader has run. Only the first rows are kept, which
+ * keeps the file small enough to be read on the main thread.
+ * <p>
+ * The same format saves the whole list in the activity's instance state, so that the list and
+ * its loaded pages come back at once when the process was killed in the background.
+ */
+final class NewsSnapshot {
+
+    private static final String LOG_TAG = NewsSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "articles.snapshot";
+
+    /**
+     * Format of the file, a snapshot with another version is ignored
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * Number of rows kept, a few screenfuls
+     */
+    private static final int MAX_ITEMS = 30;
+
+    /**
+     * Largest list saved in the instance state itself. The whole saved state of the task goes
+     * through a single Binder transaction limited to 1 MB, larger lists are written to a file.
+     */
+    private static final int MAX_STATE_BYTES = 64 * 1024;
+
+    private static final String STATE_FILE_NAME = "articles.state";
+
+    /**
+     * Keys of the saved state
+     */
+    private static final String STATE_ARTICLES = "snapshot_articles";
+    private static final String STATE_ARTICLES_FILE = "snapshot_articles_file";
+
+    private static final Executor WRITER = Executors.newSingleThreadExecutor();
+
+    private NewsSnapshot() {
+    }
+
+    /**
+     * Returns the stored articles, or an empty list if there is no usable snapshot.
+     */
+    static List<NewsItem> read(Context context) {
+
+        File file = new File(context.getFilesDir(), FILE_NAME);
+
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+
+        DataInputStream in = null;
+
+        try {
+
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return readFrom(in);
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Snapshot reading problem", e);
+            return Collections.emptyList();
+
+        } finally {
+
+            closeQuietly(in);
+
+        }
+    }
+
+    /**
+     * Replaces the stored articles with the first rows of the given list, on a background thread.
+     */
+    static void writeAsync(Context context, List<NewsItem> articles) {
+
+        final File file = new File(context.getFilesDir(), FILE_NAME);
+        final List<NewsItem> rows = new ArrayList<>(Math.min(MAX_ITEMS, articles.size()));
+
+        // Copies, which the list cannot shrink while they are written
+        for (NewsItem article : articles.subList(0, Math.min(MAX_ITEMS, articles.size()))) {
+            rows.add(article.copy());
+        }
+
+        WRITER.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, rows);
+            }
+        });
+    }
+
+    private static void write(File file, List<NewsItem> articles) {
+
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+
+        try {
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            writeTo(out, articles);
+            out.close();
+            out = null;
+
+            // A reader never sees a half-written snapshot
+            if (!temp.renameTo(file)) {
+                Log.e(LOG_TAG, "Cannot rename " + temp);
+            }
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "Snapshot writing problem", e);
+
+        } finally {
+
+            closeQuietly(out);
+
+        }
+    }
+
+    /**
+     * Saves the whole list in the instance state, or in a file named by the instance state when
+     * it is too large for it. Runs on the main thread, the process may be killed right after.
+     */
+    static void save(Context context, Bundle outState, List<NewsItem> articles) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(articles.size() * 512);
+
+        try {
+            writeTo(new DataOutputStream(bytes), articles);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "State writing problem", e);
+            return;
+        }
+
+        if (bytes.size() <= MAX_STATE_BYTES) {
+            outState.putByteArray(STATE_ARTICLES, bytes.toByteArray());
+            return;
+        }
+
+        File file = new File(context.getFilesDir(), STATE_FILE_NAME);
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+
+        try {
+
+            out = new FileOutputStream(temp);
+            bytes.writeTo(out);
+            out.close();
+            out = null;
+
+            if (temp.renameTo(file)) {
+                outState.putString(STATE_ARTICLES_FILE, file.getName());
+            } else {
+                Log.e(LOG_TAG, "Cannot rename " + temp);
+            }
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "State writing problem", e);
+
+        } finally {
+
+            closeQuietly(out);
+
+        }
+    }
+
+    /**
+     * Returns the list saved by {@link #save(Context, Bundle, List)}, or an empty list if the
+     * instance state holds none.
+     */
+    static List<NewsItem> restore(Context context, Bundle state) {
+
+        byte[] bytes = state.getByteArray(STATE_ARTICLES);
+        String fileName = state.getString(STATE_ARTICLES_FILE);
+        DataInputStream in = null;
+
+        try {
+
+            if (bytes != null) {
+                in = new DataInputStream(new ByteArrayInputStream(bytes));
+            } else if (fileName != null) {
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(new File(context.getFilesDir(), fileName))));
+            } else {
+                return Collections.emptyList();
+            }
+
+            return readFrom(in);
+
+        } catch (IOException e) {
+
+            Log.e(LOG_TAG, "State reading problem", e);
+            return Collections.emptyList();
+
+        } finally {
+
+            closeQuietly(in);
+
+        }
+    }
+
+    private static List<NewsItem> readFrom(DataInput in) throws IOException {
+
+        if (in.readInt() != VERSION) {
+            return Collections.emptyList();
+        }
+
+        int count = in.readInt();
+        List<NewsItem> articles = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+
+            String id = in.readUTF();
+            long stableId = in.readLong();
+            long publishedMillis = in.readLong();
+            String title = readString(in);
+
+            // Stubs are read back from the store once they are close to the screen
+            if (in.readBoolean()) {
+                articles.add(new NewsItem(id, stableId, publishedMillis, title));
+            } else {
+                articles.add(new NewsItem(id, stableId, publishedMillis, readString(in), title, readString(in),
+                        readString(in), readString(in), readString(in), readString(in), readString(in)));
+            }
+        }
+
+        return articles;
+    }
+
+    private static void writeTo(DataOutput out, List<NewsItem> articles) throws IOException {
+
+        out.writeInt(VERSION);
+        out.writeInt(articles.size());
+
+        for (NewsItem article : articles) {
+
+            out.writeUTF(article.getId());
+            out.writeLong(article.getStableId());
+            out.writeLong(article.getPublishedMillis());
+            writeString(out, article.getTitle());
+            out.writeBoolean(article.isStub());
+
+            if (article.isStub()) {
+                continue;
+            }
+
+            writeString(out, article.getCategory());
+            writeString(out, article.getArticleAuthor());
+            writeString(out, article.getAuthorLine());
+            writeString(out, article.getDateLine());
+            writeString(out, article.getTrailText());
+            writeString(out, article.getThumbnailUrl());
+            writeString(out, article.getArticleUrl());
+        }
+    }
+
+    // Writes a string which may be null (e.g. a field missing from the response), preceded by
+    // whether it is present
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Closing problem", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.android.newsapp;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Cold start trace of the process: the time from process start to the first frame, to the
+ * first frame showing cached articles, to the first frame showing the first articles of a
+ * response still being read and to the first frame showing freshly loaded ones.
+ * Every milestone is recorded once per process and logged; {@link #report()} is shown by the
+ * activity's debug menu.
+ */
+final class NewsStartup {
+
+    private static final String LOG_TAG = NewsStartup.class.getSimpleName();
+
+    /**
+     * Milestones of a cold start, in their usual order
+     */
+    static final int ACTIVITY_CREATED = 0;
+    static final int FIRST_FRAME = 1;
+    static final int FIRST_CACHED_ROW = 2;
+    static final int FIRST_NETWORK_ROW = 3;
+    static final int FIRST_FRESH_ROW = 4;
+
+    private static final String[] NAMES = {
+            "activity created", "first frame", "first cached row", "first network row", "first fresh row"};
+
+    /**
+     * Fallback for the process start before API 24, when the process first used this class
+     */
+    private static final long CLASS_LOADED = SystemClock.elapsedRealtime();
+
+    private static final long[] sMarks = new long[NAMES.length];
+
+    private NewsStartup() {
+    }
+
+    /**
+     * Returns the elapsed realtime the process was started at.
+     */
+    static long processStart() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartElapsedRealtime();
+        }
+        return CLASS_LOADED;
+    }
+
+    /**
+     * Returns whether the milestone has already been recorded in this process.
+     */
+    static synchronized boolean isMarked(int milestone) {
+        return sMarks[milestone] != 0;
+    }
+
+    /**
+     * Records the milestone, unless it has already been recorded in this process.
+     */
+    static synchronized void mark(int milestone) {
+
+        if (sMarks[milestone] != 0) {
+            return;
+        }
+
+        sMarks[milestone] = SystemClock.elapsedRealtime();
+
+        Log.i(LOG_TAG, NAMES[milestone] + ": " + (sMarks[milestone] - processStart()) + " ms");
+    }
+
+    /**
+     * Returns the milestones recorded so far, in milliseconds since the process start.
+     */
+    static synchronized String report() {
+
+        StringBuilder report = new StringBuilder();
+        long start = processStart();
+
+        for (int i = 0; i < NAMES.length; i++) {
+
+            if (report.length() > 0) {
+                report.append('\n');
+            }
+
+            report.append(NAMES[i]).append(": ");
+
+            if (sMarks[i] == 0) {
+                report.append('-');
+            } else {
+                report.append(String.format(Locale.US, "%d ms", sMarks[i] - start));
+            }
+        }
+
+        return report.toString();
+    }
+}
@@ -0,0 +1,435 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local SQLite store of the parsed articles, with a full-text index over their titles,
+ * bylines and trail texts. Lets keyword searches be answered without the network.
+ * Writes are batched in a single transaction per result list and run on a dedicated
+ * background thread.
+ */
+class NewsStore extends SQLiteOpenHelper {
+
+    private static final String LOG_TAG = NewsStore.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "news.db";
+
+    private static final int DATABASE_VERSION = 2;
+
+    /**
+     * Maximum number of articles kept, the least recently stored ones are removed first.
+     * Covers the longest lists, whose rows away from the screen are read back from the store
+     * by {@link NewsWindow}.
+     */
+    private static final int MAX_ARTICLES = 20000;
+
+    /**
+     * Maximum number of ids bound to a single query, below SQLite's limit of 999 parameters
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private static final String TABLE_ARTICLES = "articles";
+    private static final String TABLE_SEARCH = "articles_search";
+
+    private static final String COLUMN_ID = "id";
+    private static final String COLUMN_SECTION_ID = "section_id";
+    private static final String COLUMN_SECTION = "section";
+    private static final String COLUMN_DATE = "date";
+    private static final String COLUMN_PUBLISHED_MILLIS = "published_millis";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_URL = "url";
+    private static final String COLUMN_AUTHOR = "author";
+    private static final String COLUMN_TRAIL_TEXT = "trail_text";
+    private static final String COLUMN_THUMBNAIL = "thumbnail";
+    private static final String COLUMN_STORED_AT = "stored_at";
+
+    private static final String ARTICLE_COLUMNS = COLUMN_ID + ", " + COLUMN_SECTION_ID + ", " + COLUMN_SECTION + ", "
+            + COLUMN_DATE + ", " + COLUMN_PUBLISHED_MILLIS + ", " + COLUMN_TITLE + ", " + COLUMN_URL + ", "
+            + COLUMN_AUTHOR + ", " + COLUMN_TRAIL_TEXT + ", " + COLUMN_THUMBNAIL;
+
+    private static final String SEARCH_COLUMNS = COLUMN_TITLE + ", " + COLUMN_AUTHOR + ", " + COLUMN_TRAIL_TEXT;
+
+    private static final String SQL_UPDATE = "UPDATE " + TABLE_ARTICLES + " SET "
+            + COLUMN_SECTION_ID + " = ?, " + COLUMN_SECTION + " = ?, " + COLUMN_DATE + " = ?, " + COLUMN_PUBLISHED_MILLIS + " = ?, "
+            + COLUMN_TITLE + " = ?, " + COLUMN_URL + " = ?, " + COLUMN_AUTHOR + " = ?, "
+            + COLUMN_TRAIL_TEXT + " = ?, " + COLUMN_THUMBNAIL + " = ?, " + COLUMN_STORED_AT + " = ? "
+            + "WHERE " + COLUMN_ID + " = ?";
+
+    private static final String SQL_INSERT = "INSERT INTO " + TABLE_ARTICLES + " ("
+            + COLUMN_SECTION_ID + ", " + COLUMN_SECTION + ", " + COLUMN_DATE + ", " + COLUMN_PUBLISHED_MILLIS + ", "
+            + COLUMN_TITLE + ", " + COLUMN_URL + ", " + COLUMN_AUTHOR + ", "
+            + COLUMN_TRAIL_TEXT + ", " + COLUMN_THUMBNAIL + ", " + COLUMN_STORED_AT + ", " + COLUMN_ID + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static NewsStore sInstance;
+
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+
+    /**
+     * Returns the store of the application.
+     */
+    static synchronized NewsStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NewsStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private NewsStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+
+        db.execSQL("CREATE TABLE " + TABLE_ARTICLES + " ("
+                + COLUMN_ID + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_SECTION_ID + " TEXT, "
+                + COLUMN_SECTION + " TEXT, "
+                + COLUMN_DATE + " TEXT, "
+                + COLUMN_PUBLISHED_MILLIS + " INTEGER, "
+                + COLUMN_TITLE + " TEXT, "
+                + COLUMN_URL + " TEXT, "
+                + COLUMN_AUTHOR + " TEXT, "
+                + COLUMN_TRAIL_TEXT + " TEXT, "
+                + COLUMN_THUMBNAIL + " TEXT, "
+                + COLUMN_STORED_AT + " INTEGER)");
+
+        db.execSQL("CREATE INDEX " + TABLE_ARTICLES + "_" + COLUMN_PUBLISHED_MILLIS
+                + " ON " + TABLE_ARTICLES + " (" + COLUMN_PUBLISHED_MILLIS + ")");
+
+        // The full-text index reads its text from the articles table and is kept in sync by triggers
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_SEARCH + " USING fts4(content=\"" + TABLE_ARTICLES + "\", "
+                + SEARCH_COLUMNS + ")");
+
+        db.execSQL("CREATE TRIGGER " + TABLE_ARTICLES + "_bu BEFORE UPDATE ON " + TABLE_ARTICLES + " BEGIN "
+                + "DELETE FROM " + TABLE_SEARCH + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER " + TABLE_ARTICLES + "_bd BEFORE DELETE ON " + TABLE_ARTICLES + " BEGIN "
+                + "DELETE FROM " + TABLE_SEARCH + " WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER " + TABLE_ARTICLES + "_au AFTER UPDATE ON " + TABLE_ARTICLES + " BEGIN "
+                + "INSERT INTO " + TABLE_SEARCH + " (docid, " + SEARCH_COLUMNS + ") VALUES "
+                + "(new.rowid, new." + COLUMN_TITLE + ", new." + COLUMN_AUTHOR + ", new." + COLUMN_TRAIL_TEXT + "); END");
+        db.execSQL("CREATE TRIGGER " + TABLE_ARTICLES + "_ai AFTER INSERT ON " + TABLE_ARTICLES + " BEGIN "
+                + "INSERT INTO " + TABLE_SEARCH + " (docid, " + SEARCH_COLUMNS + ") VALUES "
+                + "(new.rowid, new." + COLUMN_TITLE + ", new." + COLUMN_AUTHOR + ", new." + COLUMN_TRAIL_TEXT + "); END");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only holds copies of downloaded articles, so it is simply rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SEARCH);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ARTICLES);
+        onCreate(db);
+    }
+
+    /**
+     * Stores the articles on the store's background thread.
+     */
+    void putAllAsync(final List<News> articles) {
+
+        if (articles.isEmpty()) {
+            return;
+        }
+
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                putAll(articles);
+            }
+        });
+    }
+
+    /**
+     * Stores the articles in a single transaction, replacing the ones already stored.
+     * Must not be called on the main thread.
+     */
+    void putAll(List<News> articles) {
+
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement update = db.compileStatement(SQL_UPDATE);
+        SQLiteStatement insert = db.compileStatement(SQL_INSERT);
+        long now = System.currentTimeMillis();
+
+        db.beginTransaction();
+
+        try {
+
+            for (News article : articles) {
+
+                // Updating in place (instead of INSERT OR REPLACE) keeps the search index triggers firing
+                bind(update, article, now);
+
+                if (update.executeUpdateDelete() == 0) {
+                    bind(insert, article, now);
+                    insert.executeInsert();
+                }
+            }
+
+            db.execSQL("DELETE FROM " + TABLE_ARTICLES + " WHERE rowid IN (SELECT rowid FROM " + TABLE_ARTICLES
+                    + " ORDER BY " + COLUMN_STORED_AT + " DESC LIMIT -1 OFFSET " + MAX_ARTICLES + ")");
+
+            db.setTransactionSuccessful();
+
+        } catch (RuntimeException e) {
+
+            Log.e(LOG_TAG, "Articles storing problem", e);
+
+        } finally {
+
+            db.endTransaction();
+            update.close();
+            insert.close();
+
+        }
+    }
+
+    // Binds the parameters shared by SQL_UPDATE and SQL_INSERT
+    private static void bind(SQLiteStatement statement, News article, long storedAt) {
+        statement.clearBindings();
+        bindString(statement, 1, article.getSectionId());
+        bindString(statement, 2, article.getSectionName());
+        bindString(statement, 3, article.getDatePublished());
+        statement.bindLong(4, article.getPublishedMillis());
+        bindString(statement, 5, article.getArticleTitle());
+        bindString(statement, 6, article.getArticleUrl());
+        bindString(statement, 7, article.getArticleAuthor());
+        bindString(statement, 8, article.getTrailText());
+        bindString(statement, 9, article.getThumbnailUrl());
+        statement.bindLong(10, storedAt);
+        bindString(statement, 11, article.getId());
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Runs the task on the store's background thread, after the writes already queued.
+     */
+    void runAfterWrites(Runnable task) {
+        mWriter.execute(task);
+    }
+
+    /**
+     * Returns the stored articles with the given ids, by id. Ids not stored are left out.
+     * Must not be called on the main thread.
+     */
+    Map<String, News> getAll(List<String> ids) {
+
+        Map<String, News> articles = new HashMap<>(ids.size() * 2);
+        SQLiteDatabase db = getReadableDatabase();
+
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+
+            List<String> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_QUERY));
+            Cursor cursor = null;
+
+            try {
+
+                cursor = db.rawQuery("SELECT " + ARTICLE_COLUMNS + " FROM " + TABLE_ARTICLES
+                                + " WHERE " + COLUMN_ID + " IN (" + placeholders(chunk.size()) + ")",
+                        chunk.toArray(new String[chunk.size()]));
+
+                while (cursor.moveToNext()) {
+                    articles.put(cursor.getString(0), read(cursor));
+                }
+
+            } catch (RuntimeException e) {
+
+                Log.e(LOG_TAG, "Articles reading problem", e);
+
+            } finally {
+
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+
+        return articles;
+    }
+
+    /**
+     * Returns the ids of the given articles which are stored, without reading the articles.
+     * Must not be called on the main thread.
+     */
+    Set<String> storedIds(List<String> ids) {
+
+        Set<String> stored = new HashSet<>(ids.size() * 2);
+        SQLiteDatabase db = getReadableDatabase();
+
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+
+            List<String> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IDS_PER_QUERY));
+            Cursor cursor = null;
+
+            try {
+
+                cursor = db.rawQuery("SELECT " + COLUMN_ID + " FROM " + TABLE_ARTICLES
+                                + " WHERE " + COLUMN_ID + " IN (" + placeholders(chunk.size()) + ")",
+                        chunk.toArray(new String[chunk.size()]));
+
+                while (cursor.moveToNext()) {
+                    stored.add(cursor.getString(0));
+                }
+
+            } catch (RuntimeException e) {
+
+                Log.e(LOG_TAG, "Articles reading problem", e);
+
+            } finally {
+
+                if (cursor != null) {
+                    cursor.close();
+                }
+            }
+        }
+
+        return stored;
+    }
+
+    // Returns the given number of comma-separated parameter placeholders
+    private static String placeholders(int count) {
+
+        StringBuilder placeholders = new StringBuilder(count * 3);
+
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+
+        return placeholders.toString();
+    }
+
+    /**
+     * Returns the stored articles matching every word of the keyword (as a prefix) in their
+     * title, byline or trail text, published in the given range in one of the given sections,
+     * newest first. Must not be called on the main thread.
+     *
+     * @param keyword    is the text of the keyword search
+     * @param sections   is the ids of the sections, empty for all sections
+     * @param fromMillis is the start of the publication range, inclusive
+     * @param toMillis   is the end of the publication range, exclusive
+     * @param limit      is the maximum number of articles returned
+     */
+    List<News> search(String keyword, Set<String> sections, long fromMillis, long toMillis, int limit) {
+
+        String match = matchExpression(keyword);
+
+        if (match.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> arguments = new ArrayList<>(sections.size() + 4);
+        arguments.add(match);
+        arguments.add(String.valueOf(fromMillis));
+        arguments.add(String.valueOf(toMillis));
+
+        // Same sections as the remote results the matches are merged into
+        StringBuilder sectionClause = new StringBuilder();
+
+        if (!sections.isEmpty()) {
+
+            sectionClause.append(" AND ").append(COLUMN_SECTION_ID).append(" IN (");
+
+            for (String section : sections) {
+                if (sectionClause.charAt(sectionClause.length() - 1) == '?') {
+                    sectionClause.append(", ");
+                }
+                sectionClause.append('?');
+                arguments.add(section);
+            }
+
+            sectionClause.append(')');
+        }
+
+        arguments.add(String.valueOf(limit));
+
+        List<News> articles = new ArrayList<>();
+        Cursor cursor = null;
+
+        try {
+
+            cursor = getReadableDatabase().rawQuery("SELECT " + ARTICLE_COLUMNS + " FROM " + TABLE_ARTICLES
+                            + " WHERE rowid IN (SELECT docid FROM " + TABLE_SEARCH + " WHERE " + TABLE_SEARCH + " MATCH ?)"
+                            + " AND " + COLUMN_PUBLISHED_MILLIS + " >= ? AND " + COLUMN_PUBLISHED_MILLIS + " < ?"
+                            + sectionClause
+                            + " ORDER BY " + COLUMN_PUBLISHED_MILLIS + " DESC LIMIT ?",
+                    arguments.toArray(new String[arguments.size()]));
+
+            while (cursor.moveToNext()) {
+                articles.add(read(cursor));
+            }
+
+        } catch (RuntimeException e) {
+
+            Log.e(LOG_TAG, "Articles searching problem", e);
+
+        } finally {
+
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return articles;
+    }
+
+    // Reads the article at the cursor's position, selected with ARTICLE_COLUMNS
+    private static News read(Cursor cursor) {
+        return new News(cursor.getString(0), cursor.getString(1), cursor.getString(2), cursor.getString(3),
+                cursor.getLong(4), cursor.getString(5), cursor.getString(6), cursor.getString(7),
+                cursor.getString(8), cursor.getString(9));
+    }
+
+    /**
+     * Returns the full-text query matching every word of the keyword as a prefix,
+     * e.g. "brexit vote" becomes "brexit* vote*". Operators and quotes typed by the user
+     * are dropped, so the expression is always valid.
+     */
+    static String matchExpression(String keyword) {
+
+        StringBuilder match = new StringBuilder();
+
+        if (keyword == null) {
+            return "";
+        }
+
+        int start = -1;
+
+        for (int i = 0; i <= keyword.length(); i++) {
+
+            boolean wordChar = i < keyword.length() && Character.isLetterOrDigit(keyword.charAt(i));
+
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(keyword, start, i).append('*');
+                start = -1;
+            }
+        }
+
+        return match.toString();
+    }
+}
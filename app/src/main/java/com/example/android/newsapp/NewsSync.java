@@ -0,0 +1,145 @@
+package com.example.android.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.preference.PreferenceManager;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background refresh of the query saved in the settings. Runs as a periodic job on unmetered
+ * networks (and, if chosen in the settings, only while charging), stores the first result page
+ * in the response cache and the article store and downloads its thumbnails, so that opening the
+ * app does not wait for the network. Requires API 21, older devices only fetch in the foreground.
+ */
+final class NewsSync {
+
+    private static final int JOB_ID = 1;
+
+    /**
+     * Maximum time the sync waits for the thumbnails to be downloaded
+     */
+    private static final long THUMBNAILS_TIMEOUT_SECONDS = 60;
+
+    private NewsSync() {
+    }
+
+    /**
+     * Schedules the periodic sync, unless it is already scheduled with the current settings.
+     */
+    static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleJob(context.getApplicationContext());
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context) {
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        if (scheduler == null) {
+            return;
+        }
+
+        boolean chargingOnly = PreferenceManager.getDefaultSharedPreferences(context).getBoolean(
+                context.getString(R.string.settings_sync_charging_key),
+                context.getResources().getBoolean(R.bool.settings_sync_charging_default));
+
+        // Scheduling again would restart the period
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == JOB_ID && pending.isRequireCharging() == chargingOnly) {
+                return;
+            }
+        }
+
+        long interval = TimeUnit.MINUTES.toMillis(context.getResources().getInteger(R.integer.sync_interval_minutes));
+
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, NewsSyncService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(chargingOnly)
+                .setPeriodic(interval)
+                .setPersisted(true)
+                .build());
+    }
+
+    /**
+     * Fetches the first result page of the saved query and its thumbnails. Must not be called
+     * on the main thread.
+     *
+     * @return true if every URL of the query returned articles
+     */
+    static boolean sync(Context context) {
+
+        NewsQuery query = NewsQuery.read(context);
+        List<String> urls = query.urls(1);
+        final List<String> thumbnails = new ArrayList<>();
+        final int[] loaded = new int[1];
+
+        // Results still fresh are not downloaded again
+        NewsFanOut.fetchAll(urls, NewsRequests.getInstance(context), false, new NewsFanOut.Callback() {
+            @Override
+            public void onSectionLoaded(int index, List<News> articles) {
+
+                if (!articles.isEmpty()) {
+                    loaded[0]++;
+                }
+
+                for (News article : articles) {
+
+                    String thumbnailUrl = NewsFormatter.thumbnailUrl(article.getThumbnailUrl());
+
+                    if (thumbnailUrl != null) {
+                        thumbnails.add(thumbnailUrl);
+                    }
+                }
+            }
+        });
+
+        warmThumbnails(NewsImages.get(context), thumbnails);
+
+        return loaded[0] == urls.size();
+    }
+
+    // Downloads the thumbnails into the image disk cache and waits for them
+    private static void warmThumbnails(Picasso picasso, List<String> thumbnailUrls) {
+
+        final CountDownLatch done = new CountDownLatch(thumbnailUrls.size());
+
+        Callback callback = new Callback() {
+            @Override
+            public void onSuccess() {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                done.countDown();
+            }
+        };
+
+        for (String thumbnailUrl : thumbnailUrls) {
+            picasso.load(thumbnailUrl).priority(Picasso.Priority.LOW).fetch(callback);
+        }
+
+        try {
+
+            done.await(THUMBNAILS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+        }
+    }
+}
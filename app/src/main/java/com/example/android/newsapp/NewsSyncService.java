@@ -0,0 +1,55 @@
+package com.example.android.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.AsyncTask;
+import android.os.Build;
+
+/**
+ * Runs the {@link NewsSync} job on a background thread.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class NewsSyncService extends JobService {
+
+    private SyncTask mTask;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        mTask = new SyncTask(params);
+        mTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+
+        // The conditions are no longer met, retry when they are
+        if (mTask != null) {
+            mTask.cancel(true);
+            mTask = null;
+        }
+
+        return true;
+    }
+
+    private class SyncTask extends AsyncTask<Void, Void, Boolean> {
+
+        private final JobParameters mParams;
+
+        private SyncTask(JobParameters params) {
+            mParams = params;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... voids) {
+            return NewsSync.sync(getApplicationContext());
+        }
+
+        @Override
+        protected void onPostExecute(Boolean synced) {
+            mTask = null;
+            jobFinished(mParams, !synced);
+        }
+    }
+}
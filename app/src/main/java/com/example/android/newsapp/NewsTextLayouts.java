@@ -0,0 +1,161 @@
+package com.example.android.newsapp;
+
+import android.text.Layout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Background stage building the text layouts of the titles and trail texts of the rows about
+ * to be shown, so that binding them reuses a layout instead of measuring the text on the main
+ * thread. The paint, alignment and width of each field are learned from its views once they
+ * are laid out. An instance belongs to an adapter, so a rotation, which recreates the activity
+ * with the landscape layout and styles, starts from scratch, and any other change of width
+ * drops the layouts built for the previous one.
+ */
+final class NewsTextLayouts {
+
+    /**
+     * Fields laid out ahead of time
+     */
+    static final int TITLE = 0;
+    static final int TRAIL_TEXT = 1;
+
+    private static final int FIELDS = 2;
+
+    /**
+     * Layouts kept per field, a few screenfuls of rows
+     */
+    private static final int MAX_LAYOUTS = 100;
+
+    /**
+     * Thread building the layouts, shared by all the adapters
+     */
+    private static final Executor BUILDER = Executors.newSingleThreadExecutor();
+
+    private final boolean mEnabled;
+
+    private final Field[] mFields = new Field[FIELDS];
+
+    /**
+     * Constructs a new {@link NewsTextLayouts}.
+     *
+     * @param enabled false to lay out every text on the main thread, as a TextView does
+     */
+    NewsTextLayouts(boolean enabled) {
+
+        mEnabled = enabled;
+
+        for (int i = 0; i < FIELDS; i++) {
+            mFields[i] = new Field();
+        }
+    }
+
+    /**
+     * Learns the style and width of the field from the given view of it, every time the view
+     * is laid out at a new width. Called on the main thread.
+     */
+    void attach(final int field, NewsTextView view) {
+        view.setOnLayoutWidthListener(new NewsTextView.OnLayoutWidthListener() {
+            @Override
+            public void onLayoutWidth(NewsTextView view, int width) {
+                mFields[field].setWidth(view, width);
+            }
+        });
+    }
+
+    /**
+     * Returns the layout of the text built for the current width of the field, or null.
+     * Called on the main thread.
+     */
+    Layout get(int field, CharSequence text) {
+
+        if (!mEnabled || text == null) {
+            return null;
+        }
+
+        Field f = mFields[field];
+        Layout layout = f.layouts.get(text);
+
+        return layout != null && layout.getWidth() == f.width ? layout : null;
+    }
+
+    /**
+     * Builds the layouts of the texts not laid out yet on the background thread, once the
+     * width of the field is known. Called on the main thread.
+     */
+    void prefetch(int field, List<String> texts) {
+
+        final Field f = mFields[field];
+
+        if (!mEnabled || f.width == 0) {
+            return;
+        }
+
+        final List<String> missing = new ArrayList<>(texts.size());
+
+        for (String text : texts) {
+            if (text != null && get(field, text) == null) {
+                missing.add(text);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        // Captured, the field may change width while the layouts are built
+        final TextPaint paint = f.paint;
+        final int width = f.width;
+        final Layout.Alignment alignment = f.alignment;
+        final LruCache<CharSequence, Layout> layouts = f.layouts;
+
+        BUILDER.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String text : missing) {
+                    layouts.put(text, NewsTextView.buildLayout(text, paint, width, alignment));
+                }
+            }
+        });
+    }
+
+    /**
+     * Style, width and layouts of a field
+     */
+    private static final class Field {
+
+        /**
+         * Layouts by text, built for the current width or, until evicted, a previous one
+         */
+        private final LruCache<CharSequence, Layout> layouts = new LruCache<>(MAX_LAYOUTS);
+
+        /**
+         * Copy of the paint of the views, only used by the background thread
+         */
+        private TextPaint paint;
+
+        private Layout.Alignment alignment;
+
+        /**
+         * Width of the text of the views, 0 until one is laid out
+         */
+        private int width;
+
+        private void setWidth(NewsTextView view, int width) {
+
+            if (width <= 0 || width == this.width) {
+                return;
+            }
+
+            this.width = width;
+            paint = new TextPaint(view.getPaint());
+            alignment = view.getAlignment();
+            layouts.evictAll();
+        }
+    }
+}
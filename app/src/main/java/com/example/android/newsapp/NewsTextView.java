@@ -0,0 +1,246 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.v4.content.res.ResourcesCompat;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+
+/**
+ * Lightweight replacement of a TextView for the title and trail text of a row, drawing a
+ * {@link Layout} that {@link NewsTextLayouts} built ahead of time on a background thread.
+ * Binding a row with a precomputed layout of the view's width skips the measurement of the
+ * text on the main thread. Without one, the layout is built while measuring, as a TextView
+ * would. Reads the text size, color, font and gravity of its style.
+ */
+class NewsTextView extends View {
+
+    /**
+     * Attributes read from the style, in ascending order of their ids
+     */
+    private static final int[] ATTRS = {android.R.attr.textSize, android.R.attr.textColor,
+            android.R.attr.gravity, android.R.attr.fontFamily};
+
+    private static final int ATTR_TEXT_SIZE = 0;
+    private static final int ATTR_TEXT_COLOR = 1;
+    private static final int ATTR_GRAVITY = 2;
+    private static final int ATTR_FONT_FAMILY = 3;
+
+    /**
+     * Receives the width the text of the view is laid out at
+     */
+    interface OnLayoutWidthListener {
+        void onLayoutWidth(NewsTextView view, int width);
+    }
+
+    private final TextPaint mPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private final Layout.Alignment mAlignment;
+
+    private CharSequence mText = "";
+
+    /**
+     * Layout of the text built ahead of time, or null
+     */
+    private Layout mPrecomputed;
+
+    /**
+     * Layout drawn, built for the current width of the view
+     */
+    private Layout mLayout;
+
+    private OnLayoutWidthListener mListener;
+
+    private int mReportedWidth = -1;
+
+    public NewsTextView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        TypedArray a = context.obtainStyledAttributes(attrs, ATTRS);
+
+        try {
+
+            mPaint.density = getResources().getDisplayMetrics().density;
+            mPaint.setTextSize(a.getDimensionPixelSize(ATTR_TEXT_SIZE, (int) TypedValue.applyDimension(
+                    TypedValue.COMPLEX_UNIT_SP, 14, getResources().getDisplayMetrics())));
+
+            ColorStateList colors = a.getColorStateList(ATTR_TEXT_COLOR);
+            mPaint.setColor(colors != null ? colors.getDefaultColor() : defaultTextColor(context));
+
+            int fontResource = a.getResourceId(ATTR_FONT_FAMILY, 0);
+            if (fontResource != 0) {
+                mPaint.setTypeface(ResourcesCompat.getFont(context, fontResource));
+            }
+
+            int gravity = a.getInt(ATTR_GRAVITY, Gravity.START);
+            mAlignment = (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.CENTER_HORIZONTAL
+                    ? Layout.Alignment.ALIGN_CENTER
+                    : Layout.Alignment.ALIGN_NORMAL;
+
+        } finally {
+
+            a.recycle();
+
+        }
+
+        setWillNotDraw(false);
+    }
+
+    /**
+     * Returns the layout of the text for the given paint, width and alignment, built the same
+     * way on the main and background threads.
+     */
+    @SuppressWarnings("deprecation")
+    static Layout buildLayout(CharSequence text, TextPaint paint, int width, Layout.Alignment alignment) {
+        return new StaticLayout(text, paint, width, alignment, 1f, 0f, true);
+    }
+
+    /**
+     * Shows the text, drawing the given layout if it was built for the view's width.
+     *
+     * @param text        to show, null for none
+     * @param precomputed layout of the text, or null to lay it out while measuring
+     */
+    void setText(CharSequence text, Layout precomputed) {
+
+        Layout previous = mLayout;
+
+        mText = text == null ? "" : text;
+        mPrecomputed = precomputed;
+        mLayout = null;
+
+        setContentDescription(mText);
+
+        // A layout of the same size as the previous one only needs drawing
+        if (previous != null && precomputed != null
+                && precomputed.getWidth() == previous.getWidth()
+                && precomputed.getHeight() == previous.getHeight()) {
+            use(precomputed, true);
+            invalidate();
+            return;
+        }
+
+        requestLayout();
+        invalidate();
+    }
+
+    CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * Sets the font of the text, dropping the layouts built with the previous one.
+     */
+    void setTypeface(Typeface typeface) {
+        mPaint.setTypeface(typeface);
+        mPrecomputed = null;
+        mLayout = null;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Returns the paint of the text, to be copied rather than changed
+     */
+    TextPaint getPaint() {
+        return mPaint;
+    }
+
+    Layout.Alignment getAlignment() {
+        return mAlignment;
+    }
+
+    void setOnLayoutWidthListener(OnLayoutWidthListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+
+        if (widthMode != MeasureSpec.EXACTLY) {
+            int desired = (int) Math.ceil(Layout.getDesiredWidth(mText, mPaint)) + horizontalPadding;
+            width = widthMode == MeasureSpec.AT_MOST ? Math.min(desired, width) : desired;
+        }
+
+        Layout layout = layout(Math.max(0, width - horizontalPadding));
+        int height = layout.getHeight() + getPaddingTop() + getPaddingBottom();
+
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+
+        if (mLayout == null) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    // Returns the layout of the text for the given width, the precomputed one if it fits
+    private Layout layout(int width) {
+
+        if (mLayout != null && mLayout.getWidth() == width) {
+            return mLayout;
+        }
+
+        if (mPrecomputed != null && mPrecomputed.getWidth() == width) {
+            use(mPrecomputed, true);
+        } else {
+            use(buildLayout(mText, mPaint, width, mAlignment), false);
+        }
+
+        if (mListener != null && width != mReportedWidth) {
+            mReportedWidth = width;
+            mListener.onLayoutWidth(this, width);
+        }
+
+        return mLayout;
+    }
+
+    private void use(Layout layout, boolean precomputed) {
+        mLayout = layout;
+        if (precomputed) {
+            NewsMetrics.TEXT_LAYOUT_HITS.increment();
+        } else {
+            NewsMetrics.TEXT_LAYOUT_MISSES.increment();
+        }
+    }
+
+    // Returns the color of a TextView without a color, the one of the theme's small text appearance
+    private static int defaultTextColor(Context context) {
+
+        TypedValue appearance = new TypedValue();
+
+        if (!context.getTheme().resolveAttribute(android.R.attr.textAppearanceSmall, appearance, true)) {
+            return Color.BLACK;
+        }
+
+        TypedArray a = context.obtainStyledAttributes(appearance.resourceId, new int[]{android.R.attr.textColor});
+
+        try {
+            ColorStateList colors = a.getColorStateList(0);
+            return colors == null ? Color.BLACK : colors.getDefaultColor();
+        } finally {
+            a.recycle();
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package com.example.android.newsapp;
 
-import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.common.io.CountingInputStream;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -15,9 +14,12 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.Request;
+import okhttp3.Response;
 
 class NewsUtils {
 
@@ -36,6 +38,8 @@ class NewsUtils {
     /**
      * Tags for target keys
      */
+    private static final String KEY_ID = "id";
+    private static final String KEY_SECTION_ID = "sectionId";
     private static final String KEY_SECTION = "sectionName";
     private static final String KEY_DATE = "webPublicationDate";
     private static final String KEY_TITLE = "webTitle";
@@ -48,8 +52,47 @@ class NewsUtils {
      * empty string in case of situation there's no json data
      */
     private static final String KEY_NO_AUTHOR = "No author";
-    private static final String KEY_NO_THUMBNAIL = "No thumbnail";
-    private static final String KEY_NO_TRAIL_TEXT = "No trail text";
+    static final String KEY_NO_THUMBNAIL = "No thumbnail";
+    static final String KEY_NO_TRAIL_TEXT = "No trail text";
+
+    /**
+     * Headers used for conditional requests
+     */
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * Headers and value used for compressed transport
+     */
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String ENCODING_GZIP = "gzip";
+
+    /**
+     * Value of the "show-fields" parameter listing only the fields the list item displays,
+     * i.e. the ones read by {@link #readArticle(JsonReader)}
+     */
+    static final String DISPLAYED_FIELDS = KEY_TRAIL_TEXT + "," + KEY_THUMBNAIL + "," + KEY_AUTHOR;
+
+    /**
+     * Number of parsed articles published to a {@link ParseListener} first, about a screenful.
+     * The following batches double in size, so a large page is published a handful of times.
+     */
+    static final int FIRST_BATCH_SIZE = 10;
+
+    /**
+     * Receives the articles parsed so far while a response is still being read.
+     */
+    interface ParseListener {
+
+        /**
+         * Called on the parsing thread with a batch of every article parsed so far, first after
+         * {@link #FIRST_BATCH_SIZE} articles.
+         */
+        void onArticlesParsed(List<News> articles);
+    }
 
     private NewsUtils() {
     }
@@ -58,15 +101,40 @@ class NewsUtils {
      * Query the Guardian API and return a list of {@link News} objects.
      */
     public static List<News> fetchNewsData(String requestUrl) {
+        return fetchNewsData(requestUrl, null);
+    }
+
+    /**
+     * Query the Guardian API and return a list of {@link News} objects, revalidating the
+     * response stored in the given cache (if any) instead of downloading it again.
+     */
+    static List<News> fetchNewsData(String requestUrl, NewsCache cache) {
+        return fetchNewsData(requestUrl, cache, null);
+    }
+
+    /**
+     * Query the Guardian API and return a list of {@link News} objects, publishing the
+     * articles to the given listener (if any) in batches while the response is being parsed.
+     */
+    static List<News> fetchNewsData(String requestUrl, NewsCache cache, ParseListener listener) {
+        return fetchNewsData(requestUrl, cache, listener, new NewsCancellation());
+    }
+
+    /**
+     * Query the Guardian API like {@link #fetchNewsData(String, NewsCache, ParseListener)} until
+     * the given cancellation aborts the request, returning an empty list once it did.
+     */
+    static List<News> fetchNewsData(String requestUrl, NewsCache cache, ParseListener listener,
+                                    NewsCancellation cancellation) {
         // Create URL object
         URL url = createUrl(requestUrl);
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+        // Perform HTTP request to the URL and parse the response while it is being received
+        List<News> articles = Collections.emptyList();
 
         try {
 
-            jsonResponse = makeHttpRequest(url);
+            articles = makeHttpRequest(url, cache, listener, cancellation);
 
         } catch (IOException e) {
 
@@ -74,8 +142,7 @@ class NewsUtils {
 
         }
 
-        // Extract relevant fields from the JSON response and return the list of {@link News}s
-        return extractFeatureFromJson(jsonResponse);
+        return articles;
     }
 
     /**
@@ -98,187 +165,400 @@ class NewsUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL and return a String as the response.
+     * Make an HTTP request to the given URL and return the list of articles parsed
+     * straight from the response stream. When a cache is given the request is sent
+     * with the stored validators, and a 304 response is served from the cache.
+     * The request goes through the shared {@link NewsHttpClient}, so the connection is
+     * reused by the next request and failures are retried. A listener, if any, receives the
+     * articles parsed so far in batches. Cancelling closes the connection and stops the parse
+     * at the next article, and nothing is returned or cached. A malformed body returns the
+     * articles read before the error, but neither it nor a truncated one is cached, so that
+     * its validators are never sent again.
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    private static List<News> makeHttpRequest(URL url, NewsCache cache, ParseListener listener,
+                                              NewsCancellation cancellation) throws IOException {
+        return makeHttpRequest(url, cache, listener, cancellation, true);
+    }
+
+    // Sends the request with the stored validators only if conditional is true
+    private static List<News> makeHttpRequest(URL url, NewsCache cache, ParseListener listener,
+                                              NewsCancellation cancellation, boolean conditional)
+            throws IOException {
+        List<News> articles = Collections.emptyList();
 
         // If the URL is null, then return early.
         if (url == null) {
-            return jsonResponse;
+            return articles;
+        }
+
+        String requestUrl = url.toString();
+        NewsCache.Validators validators = cache == null || !conditional ? null : cache.validators(requestUrl);
+
+        // Asking for gzip explicitly turns off the transparent decompression of
+        // OkHttp, so the compressed size can be measured below
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .header(HEADER_ACCEPT_ENCODING, ENCODING_GZIP);
+
+        if (validators != null) {
+
+            if (validators.eTag != null) {
+                request.header(HEADER_IF_NONE_MATCH, validators.eTag);
+            }
+
+            if (validators.lastModified != null) {
+                request.header(HEADER_IF_MODIFIED_SINCE, validators.lastModified);
+            }
         }
 
-        HttpURLConnection urlConnection = null;
+        Response response = null;
         InputStream inputStream = null;
 
         try {
 
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
+            response = NewsHttpClient.getInstance().execute(request.build(), cancellation);
+
+            int responseCode = response.code();
+            NewsMetrics.recordResponseCode(responseCode);
 
             // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            // then parse the input stream as it arrives.
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+
+                long bodyStart = System.nanoTime();
+
+                // The parse runs on top of the download, the time spent waiting for the
+                // network is measured separately
+                NewsMetrics.TimedInputStream timedStream = new NewsMetrics.TimedInputStream(response.body().byteStream());
+                CountingInputStream wireStream = new CountingInputStream(timedStream);
+                inputStream = wireStream;
+
+                // Decompress on the fly while the response is being parsed
+                if (ENCODING_GZIP.equalsIgnoreCase(response.header(HEADER_CONTENT_ENCODING))) {
+                    inputStream = new GZIPInputStream(inputStream);
+                }
+
+                CountingInputStream decodedStream = new CountingInputStream(inputStream);
+                inputStream = decodedStream;
+
+                // The parsed articles are kept in memory by the caches, so they are
+                // stored column by column as they are read
+                if (cache == null) {
+
+                    articles = extractFeatureFromJson(inputStream, listener, cancellation);
+
+                } else {
+
+                    // Keep a copy of the body while it is being parsed
+                    NewsCache.Recorder recorder = cache.record(requestUrl, inputStream);
+                    inputStream = recorder;
+
+                    ArticleBatch.Builder parsed = new ArticleBatch.Builder(FIRST_BATCH_SIZE);
+                    boolean complete = false;
+
+                    try {
+                        complete = readJson(recorder, parsed, listener, cancellation);
+                    } finally {
+                        // Only a fully parsed body is stored along with its validators
+                        if (!complete) {
+                            cache.abort(recorder);
+                        }
+                    }
+
+                    articles = parsed.build();
+
+                    if (complete) {
+                        cache.commit(recorder, new NewsCache.Validators(
+                                response.header(HEADER_ETAG),
+                                response.header(HEADER_LAST_MODIFIED)), articles);
+                    }
+                }
+
+                long bodyNanos = System.nanoTime() - bodyStart;
+                NewsMetrics.DOWNLOAD.recordNanos(timedStream.getNanos());
+                NewsMetrics.PARSE.recordNanos(bodyNanos - timedStream.getNanos());
+                NewsMetrics.WIRE_BYTES.add(wireStream.getCount());
+                NewsMetrics.DECODED_BYTES.add(decodedStream.getCount());
+
+                Log.v(LOG_TAG, "Received " + wireStream.getCount() + " bytes on the wire ("
+                        + decodedStream.getCount() + " decoded) over " + response.protocol() + " for " + requestUrl);
+
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cache != null) {
+
+                // Nothing has changed since the stored response
+                List<News> cached = cache.get(requestUrl);
+
+                if (cached != null) {
+                    cache.touch(requestUrl);
+                    articles = cached;
+                } else if (conditional) {
+                    // The stored body was evicted after its validators were read, ask for it again
+                    Log.w(LOG_TAG, "Not modified, but no longer cached: " + requestUrl);
+                    response.close();
+                    articles = makeHttpRequest(url, cache, listener, cancellation, false);
+                }
+
             } else {
 
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Error response code: " + responseCode);
 
             }
 
         } catch (IOException e) {
 
-            Log.e(LOG_TAG, "JSON results retrieving problem", e);
+            // A cancelled call fails with whatever its closed connection was doing
+            if (cancellation.isCanceled()) {
 
-        } finally {
+                NewsMetrics.CANCELLATIONS.increment();
+                Log.v(LOG_TAG, "Request canceled: " + requestUrl);
+                articles = Collections.emptyList();
+
+            } else {
+
+                NewsMetrics.IO_ERRORS.increment();
+                Log.e(LOG_TAG, "JSON results retrieving problem", e);
 
-            if (urlConnection != null) {
-                urlConnection.disconnect();
             }
 
+        } finally {
+
             if (inputStream != null) {
                 // Closing the input stream could throw an IOException, which is why
                 // the makeHttpRequest(URL url) method signature specifies than an IOException
                 // could be thrown.
                 inputStream.close();
             }
+
+            // A fully read response hands its connection back to the pool
+            if (response != null) {
+                response.close();
+            }
         }
 
-        return jsonResponse;
+        return articles;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * Return a list of {@link News} objects read token by token from the given JSON stream.
+     * Only the keys the app displays are materialized, every other subtree (tags, body, etc.)
+     * is skipped without being buffered. The articles are returned as an {@link ArticleBatch}
+     * filled while parsing.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-
-        if (inputStream != null) {
+    static List<News> extractFeatureFromJson(InputStream inputStream) throws IOException {
+        return extractFeatureFromJson(inputStream, null);
+    }
 
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
+    /**
+     * Return a list of {@link News} objects read token by token from the given JSON stream,
+     * publishing the articles parsed so far to the given listener (if any) in batches.
+     */
+    static List<News> extractFeatureFromJson(InputStream inputStream, ParseListener listener) throws IOException {
+        return extractFeatureFromJson(inputStream, listener, null);
+    }
 
-            while (line != null) {
+    /**
+     * Return a list of {@link News} objects read token by token from the given JSON stream,
+     * checking the given cancellation (if any) after every article.
+     *
+     * @throws NewsCancellation.CanceledException if the parse was cancelled
+     */
+    static List<News> extractFeatureFromJson(InputStream inputStream, ParseListener listener,
+                                             NewsCancellation cancellation) throws IOException {
 
-                output.append(line);
-                line = reader.readLine();
+        // The articles are stored column by column as they are read
+        ArticleBatch.Builder articles = new ArticleBatch.Builder(FIRST_BATCH_SIZE);
 
-            }
+        // If there is no stream, then return early.
+        if (inputStream == null) {
+            return articles.build();
         }
 
-        return output.toString();
+        readJson(inputStream, articles, listener, cancellation);
+
+        // Return the list of articles
+        return articles.build();
     }
 
     /**
-     * Return a list of {@link News} objects that has been built up from
-     * parsing the given JSON response.
+     * Reads the articles of the given JSON stream into the given builder, returns whether the
+     * whole document was read. A malformed document keeps the articles read before the
+     * error.
+     *
+     * @throws NewsCancellation.CanceledException if the parse was cancelled
      */
-    private static List<News> extractFeatureFromJson(String articleJSON) {
-
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(articleJSON)) {
-            return Collections.emptyList();
-        }
+    private static boolean readJson(InputStream inputStream, ArticleBatch.Builder articles,
+                                    ParseListener listener, NewsCancellation cancellation) throws IOException {
 
-        // Create an empty ArrayList that we can start adding articles to
-        List<News> articles = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
 
-        // Try to parse the JSON response string. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
+        // If there's a problem with the way the JSON is formatted, an IllegalStateException
+        // or a MalformedJsonException will be thrown. Catch it so the app doesn't crash,
+        // keep the articles read so far and print the error message to the logs.
         try {
 
-            // Create a JSONObject from the JSON response string
-            JSONObject rootJsonObject = new JSONObject(articleJSON);
+            reader.beginObject();
+
+            while (reader.hasNext()) {
 
-            JSONObject responseJsonObject = rootJsonObject.getJSONObject(KEY_RESPONSE);
+                if (KEY_RESPONSE.equals(reader.nextName())) {
+                    readResponse(reader, articles, listener, cancellation);
+                } else {
+                    reader.skipValue();
+                }
+            }
 
-            // Extract the JSONArray associated with the key called "results"
-            JSONArray resultsArray = responseJsonObject.getJSONArray(KEY_RESULTS);
+            reader.endObject();
 
-            String author = null;
-            String trailText = null;
-            String thumbnailUrl = null;
+            return true;
 
-            // Iterating through resultsArray, creating an (@link News) object
-            for (int i = 0; i < resultsArray.length(); i++) {
+        } catch (IllegalStateException | MalformedJsonException e) {
 
-                // Get a single article at position i within the list of articles
-                JSONObject currentArticle = resultsArray.getJSONObject(i);
+            Log.e(LOG_TAG, "JSON results parsing problem", e);
 
-                // Extract the value for the key called "sectionName"
-                String category = currentArticle.optString(KEY_SECTION);
+            return false;
+
+        }
+    }
 
-                // Extract the value for the key called "webPublicationDate"
-                String date = currentArticle.optString(KEY_DATE);
+    /**
+     * Reads the "response" node, adding every entry of its "results" array to the given
+     * builder as soon as it is read.
+     */
+    private static void readResponse(JsonReader reader, ArticleBatch.Builder articles, ParseListener listener,
+                                     NewsCancellation cancellation) throws IOException {
 
-                // Extract the value for the key called "webTitle"
-                String title = currentArticle.optString(KEY_TITLE);
+        int nextBatch = FIRST_BATCH_SIZE;
 
-                // Extract the value for the key called "webUrl"
-                String url = currentArticle.optString(KEY_URL);
+        reader.beginObject();
 
-                if (currentArticle.has(KEY_FIELDS)) {
+        while (reader.hasNext()) {
 
-                    // Extract the JSONObject associated with the key called "fields"
-                    JSONObject fieldsObject = currentArticle.getJSONObject(KEY_FIELDS);
+            if (KEY_RESULTS.equals(reader.nextName())) {
 
-                    if (fieldsObject.has(KEY_TRAIL_TEXT)) {
+                reader.beginArray();
 
-                        // Extract the value for the key called "trailText"
-                        trailText = fieldsObject.getString(KEY_TRAIL_TEXT);
+                while (reader.hasNext()) {
 
-                    } else {
+                    articles.add(readArticle(reader));
 
-                        trailText = KEY_NO_TRAIL_TEXT;
+                    // Stop at the article boundary, the rest of the response is not read
+                    if (cancellation != null) {
+                        cancellation.throwIfCanceled();
                     }
 
-                    if (fieldsObject.has(KEY_THUMBNAIL)) {
+                    // Publish the first articles while the rest of the page is still on the way
+                    if (listener != null && articles.size() == nextBatch) {
+                        listener.onArticlesParsed(articles.build());
+                        nextBatch *= 2;
+                    }
+                }
 
-                        // Extract the value for the key called "thumbnail"
-                        thumbnailUrl = fieldsObject.getString(KEY_THUMBNAIL);
+                reader.endArray();
 
-                    } else {
+            } else {
+                reader.skipValue();
+            }
+        }
 
-                        thumbnailUrl = KEY_NO_THUMBNAIL;
+        reader.endObject();
+    }
 
-                    }
+    /**
+     * Reads a single entry of the "results" array into a {@link News} object.
+     */
+    private static News readArticle(JsonReader reader) throws IOException {
 
-                    if (fieldsObject.has(KEY_AUTHOR)) {
+        String id = "";
+        String sectionId = "";
+        String category = "";
+        String date = "";
+        String title = "";
+        String url = "";
+        String author = KEY_NO_AUTHOR;
+        String trailText = KEY_NO_TRAIL_TEXT;
+        String thumbnailUrl = KEY_NO_THUMBNAIL;
 
-                        // Extract the value for the key called "webTitle"
-                        author = fieldsObject.getString(KEY_AUTHOR);
+        reader.beginObject();
 
-                    } else {
+        while (reader.hasNext()) {
 
-                        author = KEY_NO_AUTHOR;
+            switch (reader.nextName()) {
 
-                    }
-                }
+                case KEY_ID:
+                    id = readString(reader, id);
+                    break;
+
+                case KEY_SECTION_ID:
+                    sectionId = readString(reader, sectionId);
+                    break;
+
+                case KEY_SECTION:
+                    category = readString(reader, category);
+                    break;
+
+                case KEY_DATE:
+                    date = readString(reader, date);
+                    break;
+
+                case KEY_TITLE:
+                    title = readString(reader, title);
+                    break;
+
+                case KEY_URL:
+                    url = readString(reader, url);
+                    break;
+
+                case KEY_FIELDS:
 
-                // Create a new {@link News} object with the category, date, title,
-                // url, author, trail text and thumbnail url from the JSON response.
+                    reader.beginObject();
 
-                News article = new News(category, date, title, url, author, trailText, thumbnailUrl);
+                    while (reader.hasNext()) {
 
-                articles.add(article);
+                        switch (reader.nextName()) {
 
+                            case KEY_TRAIL_TEXT:
+                                trailText = readString(reader, trailText);
+                                break;
+
+                            case KEY_THUMBNAIL:
+                                thumbnailUrl = readString(reader, thumbnailUrl);
+                                break;
+
+                            case KEY_AUTHOR:
+                                author = readString(reader, author);
+                                break;
+
+                            default:
+                                // body, headline, wordcount and the rest are never displayed
+                                reader.skipValue();
+                        }
+                    }
+
+                    reader.endObject();
+                    break;
+
+                default:
+                    reader.skipValue();
             }
+        }
+
+        reader.endObject();
 
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "JSON results parsing problem", e);
+        // Create a new {@link News} object with the id, section id, category, date, title,
+        // url, author, trail text and thumbnail url from the JSON response.
+        return new News(id, sectionId, category, date, NewsDates.parse(date), title, url, author, trailText, thumbnailUrl);
+    }
+
+    /**
+     * Returns the next string value, or the fallback if the value is a JSON null.
+     */
+    private static String readString(JsonReader reader, String fallback) throws IOException {
+
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return fallback;
         }
 
-        // Return the list of articles
-        return articles;
+        return reader.nextString();
     }
 }
@@ -0,0 +1,453 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Bounded-memory model of a long article list. Only the articles in a band of rows around the
+ * visible ones keep their text, the others are shrunk in place to stubs holding their id, title
+ * and date. The window shrinks its own copies of the delivered articles (see {@link #own}), so
+ * the loaded pages and the filtered list hold them at the size of a stub while the recent
+ * results cached by the loaders stay whole. An article is only shrunk once it is known to be
+ * in the {@link NewsStore}, from which stubs entering the band get their text back on a
+ * background thread before their rows are rebound. The heap used by the list then depends on
+ * the size of the band rather than on the number of loaded articles. Used from the main thread.
+ */
+final class NewsWindow {
+
+    private static final String LOG_TAG = NewsWindow.class.getSimpleName();
+
+    /**
+     * Receives the rows whose articles got their text back
+     */
+    interface Listener {
+
+        /**
+         * Called on the main thread with the range of rows of the shown list to rebind.
+         */
+        void onArticlesRehydrated(List<NewsItem> shown, int first, int last);
+    }
+
+    /**
+     * Reads the text of articles away from the main thread
+     */
+    interface Source {
+
+        /**
+         * Returns the full items of the given ids, by id. Ids not found are left out.
+         */
+        Map<String, NewsItem> load(List<String> ids);
+
+        /**
+         * Returns the given ids whose full items can be loaded.
+         */
+        Set<String> stored(List<String> ids);
+    }
+
+    /**
+     * Lists of up to this many margins of rows keep all of their text, reading it back would
+     * cost more than it saves
+     */
+    private static final int MIN_WINDOWED_MARGINS = 4;
+
+    /**
+     * Number of rows kept whole on each side of the visible ones
+     */
+    private final int mMargin;
+
+    private final Source mSource;
+
+    private final Executor mBackground;
+
+    private final Executor mMain;
+
+    private final Listener mListener;
+
+    /**
+     * Loaded articles, including the ones hidden by the filter
+     */
+    private List<NewsItem> mArticles = Collections.emptyList();
+
+    /**
+     * Articles shown by the list, the band is made of some of its rows
+     */
+    private List<NewsItem> mShown = Collections.emptyList();
+
+    /**
+     * First and last rows of the band in {@link #mShown}, -1 when the list is empty
+     */
+    private int mFirst = -1;
+    private int mLast = -1;
+
+    /**
+     * Articles keeping their text
+     */
+    private Set<NewsItem> mBand = newIdentitySet();
+
+    /**
+     * Stubs whose text is being read
+     */
+    private final Set<NewsItem> mPending = newIdentitySet();
+
+    /**
+     * Copies owned by the window, by id
+     */
+    private Map<String, NewsItem> mOwned = Collections.emptyMap();
+
+    /**
+     * Ids of the loaded articles known to be stored, which can be shrunk
+     */
+    private final Set<String> mStored = new HashSet<>();
+
+    /**
+     * Articles to shrink once they are known to be stored, and the ones being looked up
+     */
+    private final Set<NewsItem> mUnchecked = newIdentitySet();
+    private final Set<NewsItem> mChecking = newIdentitySet();
+
+    /**
+     * Returns a window reading the text of the stubs from the app's {@link NewsStore}, with
+     * the margin configured in resources.
+     */
+    static NewsWindow create(Context context, Listener listener) {
+
+        final NewsStore store = NewsStore.getInstance(context);
+        final NewsFormatter formatter = NewsLoader.createFormatter(context);
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        // Queued after the pending writes, so the articles just loaded are found
+        Executor background = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                store.runAfterWrites(task);
+            }
+        };
+
+        Executor main = new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                mainHandler.post(task);
+            }
+        };
+
+        // Only runs on the store's single thread, as required by the formatter
+        Source source = new Source() {
+            @Override
+            public Map<String, NewsItem> load(List<String> ids) {
+
+                Map<String, NewsItem> items = new HashMap<>(ids.size() * 2);
+
+                for (News article : store.getAll(ids).values()) {
+                    items.put(article.getId(), formatter.format(article));
+                }
+
+                return items;
+            }
+
+            @Override
+            public Set<String> stored(List<String> ids) {
+                return store.storedIds(ids);
+            }
+        };
+
+        return new NewsWindow(context.getResources().getInteger(R.integer.article_window_margin),
+                source, background, main, listener);
+    }
+
+    /**
+     * Constructs a new {@link NewsWindow}.
+     *
+     * @param margin     number of rows kept whole on each side of the visible ones
+     * @param source     reading the text of the stubs
+     * @param background executor running the source
+     * @param main       executor of the main thread
+     * @param listener   receiving the rows to rebind
+     */
+    NewsWindow(int margin, Source source, Executor background, Executor main, Listener listener) {
+        mMargin = margin;
+        mSource = source;
+        mBackground = background;
+        mMain = main;
+        mListener = listener;
+    }
+
+    /**
+     * Returns the delivered articles as items owned by the window, which it may shrink. The
+     * copy already owned for an article is kept while the article is unchanged, so a stub
+     * stays a stub and the list keeps its items across deliveries; other articles are copied.
+     */
+    List<NewsItem> own(List<NewsItem> articles) {
+
+        Map<String, NewsItem> owned = new HashMap<>(articles.size() * 2);
+        List<NewsItem> copies = new ArrayList<>(articles.size());
+
+        for (NewsItem article : articles) {
+
+            NewsItem copy = mOwned.get(article.getId());
+
+            // The text of a stub is compared once it is read back
+            boolean unchanged = copy != null && (copy == article
+                    || (copy.isStub() ? copy.getTitle().equals(article.getTitle()) : copy.equals(article)));
+
+            if (!unchanged) {
+                copy = article.copy();
+            }
+
+            owned.put(copy.getId(), copy);
+            copies.add(copy);
+        }
+
+        mOwned = owned;
+        mStored.retainAll(owned.keySet());
+
+        return copies;
+    }
+
+    /**
+     * Replaces the loaded articles and the shown ones, shrinking every article away from the
+     * visible rows and reading back the text of the stubs close to them. The articles are the
+     * ones returned by {@link #own}.
+     *
+     * @param articles     loaded articles
+     * @param shown        articles of the list's rows, all or some of the loaded ones
+     * @param firstVisible first visible row, or -1 if not laid out yet
+     * @param lastVisible  last visible row, or -1 if not laid out yet
+     */
+    void setArticles(List<NewsItem> articles, List<NewsItem> shown, int firstVisible, int lastVisible) {
+
+        mArticles = articles;
+        mShown = shown;
+
+        Set<NewsItem> band = band(firstVisible, lastVisible);
+
+        if (isWindowed()) {
+
+            // The rows of the previous band stay on screen until the new list is laid out,
+            // they are shrunk the next time the band moves
+            Set<NewsItem> previous = newIdentitySet();
+
+            for (NewsItem article : articles) {
+                if (band.contains(article)) {
+                    continue;
+                }
+                if (mBand.contains(article)) {
+                    previous.add(article);
+                } else {
+                    shrink(article);
+                }
+            }
+
+            band.addAll(previous);
+        }
+
+        mBand = band;
+        rehydrate();
+        checkStored();
+    }
+
+    /**
+     * Moves the band along with the visible rows of the shown list, once they come within half
+     * a margin of either end of it.
+     */
+    void onScrolled(int firstVisible, int lastVisible) {
+
+        if (!isWindowed() || !isNearEdge(firstVisible, lastVisible)) {
+            return;
+        }
+
+        Set<NewsItem> band = band(firstVisible, lastVisible);
+
+        for (NewsItem article : mBand) {
+            if (!band.contains(article)) {
+                shrink(article);
+            }
+        }
+
+        mBand = band;
+        rehydrate();
+        checkStored();
+    }
+
+    // Shrinks the article if its text can be read back, or looks it up first
+    private void shrink(NewsItem article) {
+        if (mStored.contains(article.getId())) {
+            article.shrink();
+        } else if (!article.isStub()) {
+            mUnchecked.add(article);
+        }
+    }
+
+    // Looks up which of the articles waiting to be shrunk are stored, then shrinks the ones
+    // still away from the band
+    private void checkStored() {
+
+        final List<NewsItem> articles = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+
+        for (NewsItem article : mUnchecked) {
+            if (mChecking.add(article)) {
+                articles.add(article);
+                ids.add(article.getId());
+            }
+        }
+
+        mUnchecked.clear();
+
+        if (articles.isEmpty()) {
+            return;
+        }
+
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                final Set<String> stored = mSource.stored(ids);
+
+                mMain.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onChecked(articles, stored);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onChecked(List<NewsItem> articles, Set<String> stored) {
+
+        for (NewsItem article : articles) {
+
+            mChecking.remove(article);
+
+            // Articles not stored keep their text, and are looked up again the next time they
+            // leave the band
+            if (!stored.contains(article.getId()) || mOwned.get(article.getId()) != article) {
+                continue;
+            }
+
+            mStored.add(article.getId());
+
+            if (!mBand.contains(article)) {
+                article.shrink();
+            }
+        }
+    }
+
+    private boolean isWindowed() {
+        return mArticles.size() > MIN_WINDOWED_MARGINS * mMargin;
+    }
+
+    private boolean isNearEdge(int firstVisible, int lastVisible) {
+
+        int slack = mMargin / 2;
+
+        return mFirst < 0
+                || (mFirst > 0 && firstVisible - mFirst < slack)
+                || (mLast < mShown.size() - 1 && mLast - lastVisible < slack);
+    }
+
+    // Returns the articles of the shown rows within the margin of the visible ones, or of all
+    // of them for a short list, and keeps the range of these rows
+    private Set<NewsItem> band(int firstVisible, int lastVisible) {
+
+        Set<NewsItem> band = newIdentitySet();
+        int size = mShown.size();
+
+        if (size == 0) {
+            mFirst = -1;
+            mLast = -1;
+            return band;
+        }
+
+        if (isWindowed()) {
+            int first = Math.max(0, Math.min(firstVisible, size - 1));
+            int last = Math.max(first, Math.min(lastVisible, size - 1));
+            mFirst = Math.max(0, first - mMargin);
+            mLast = Math.min(size - 1, last + mMargin);
+        } else {
+            mFirst = 0;
+            mLast = size - 1;
+        }
+
+        for (int i = mFirst; i <= mLast; i++) {
+            band.add(mShown.get(i));
+        }
+
+        return band;
+    }
+
+    // Reads back the text of the stubs of the band not being read already
+    private void rehydrate() {
+
+        final List<NewsItem> stubs = new ArrayList<>();
+        final List<String> ids = new ArrayList<>();
+
+        for (NewsItem article : mBand) {
+            if (article.isStub() && mPending.add(article)) {
+                stubs.add(article);
+                ids.add(article.getId());
+            }
+        }
+
+        if (stubs.isEmpty()) {
+            return;
+        }
+
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+
+                final Map<String, NewsItem> items = mSource.load(ids);
+
+                mMain.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(stubs, items);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLoaded(List<NewsItem> stubs, Map<String, NewsItem> items) {
+
+        boolean rehydrated = false;
+
+        for (NewsItem stub : stubs) {
+
+            mPending.remove(stub);
+            NewsItem item = items.get(stub.getId());
+
+            // Stubs that left the band meanwhile stay stubs, and the ones not found are read
+            // again the next time the band moves
+            if (item != null && stub.isStub() && mBand.contains(stub)) {
+                stub.rehydrate(item);
+                rehydrated = true;
+            } else if (item == null) {
+                // Dropped from the store after it was shrunk, it is no longer shrunk again
+                Log.w(LOG_TAG, "Stub no longer stored: " + stub.getId());
+                mStored.remove(stub.getId());
+            }
+        }
+
+        if (rehydrated) {
+            mListener.onArticlesRehydrated(mShown, mFirst, mLast);
+        }
+    }
+
+    private static Set<NewsItem> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<NewsItem, Boolean>());
+    }
+}
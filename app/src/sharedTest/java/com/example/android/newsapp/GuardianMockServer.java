@@ -0,0 +1,315 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * Local stand-in for the Guardian "/search" endpoint, answering with synthetic responses
+ * built by {@link GuardianPayloads} for the requested page, page size, fields and tags.
+ * The number of matched results, the latency, the bandwidth and the share of failed
+ * requests are configurable, so the whole fetch pipeline can be measured without the
+ * quota and the noise of the live API.
+ */
+final class GuardianMockServer implements Closeable {
+
+    /**
+     * Largest page size accepted by the Guardian API
+     */
+    static final int GUARDIAN_MAX_PAGE_SIZE = 200;
+
+    private static final int DEFAULT_PAGE_SIZE = 10;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final MockWebServer mServer = new MockWebServer();
+
+    private final int mTotalResults;
+
+    private final int mMaxPageSize;
+
+    private final long mLatencyMillis;
+
+    private final long mBytesPerSecond;
+
+    private final double mErrorRate;
+
+    private final Random mRandom;
+
+    /**
+     * Rendered bodies by page, page size, fields, tags and encoding, built once per server
+     */
+    private final ConcurrentHashMap<String, byte[]> mBodies = new ConcurrentHashMap<>();
+
+    private final AtomicInteger mSearchRequests = new AtomicInteger();
+
+    private final AtomicInteger mInjectedErrors = new AtomicInteger();
+
+    private GuardianMockServer(Builder builder) {
+        mTotalResults = builder.mTotalResults;
+        mMaxPageSize = builder.mMaxPageSize;
+        mLatencyMillis = builder.mLatencyMillis;
+        mBytesPerSecond = builder.mBytesPerSecond;
+        mErrorRate = builder.mErrorRate;
+        mRandom = new Random(builder.mSeed);
+    }
+
+    /**
+     * Returns the web address of the "/search" endpoint, to be used in place of the Guardian's.
+     */
+    String searchUrl() {
+        return mServer.url("/search").toString();
+    }
+
+    /**
+     * Returns the number of search requests received, failed ones included
+     */
+    int searchRequests() {
+        return mSearchRequests.get();
+    }
+
+    /**
+     * Returns the number of search requests answered with an injected failure
+     */
+    int injectedErrors() {
+        return mInjectedErrors.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mServer.shutdown();
+    }
+
+    private void start() throws IOException {
+
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+
+        mServer.start();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+
+        HttpUrl url = request.getRequestUrl();
+
+        // Thumbnails are not served, the list shows its placeholder
+        if (!"/search".equals(url.encodedPath())) {
+            return new MockResponse().setResponseCode(404);
+        }
+
+        mSearchRequests.incrementAndGet();
+
+        if (injectError()) {
+
+            mInjectedErrors.incrementAndGet();
+
+            // Half of the failures are server errors, the other half dropped connections
+            if (nextBoolean()) {
+                return delay(new MockResponse().setResponseCode(503));
+            }
+            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+        }
+
+        int page = intParameter(url, "page", 1);
+        int pageSize = intParameter(url, "page-size", DEFAULT_PAGE_SIZE);
+        int pages = Math.max(1, (mTotalResults + pageSize - 1) / Math.max(1, pageSize));
+
+        if (pageSize < 1 || pageSize > mMaxPageSize) {
+            return error("page-size must be an integer between 1 and " + mMaxPageSize);
+        }
+
+        if (page < 1 || page > pages) {
+            return error("requested page is beyond the number of available pages");
+        }
+
+        String showFields = url.queryParameter("show-fields");
+        String showTags = url.queryParameter("show-tags");
+        boolean contributorTags = showTags != null && showTags.contains("contributor");
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        byte[] body = body(page, pageSize, showFields == null ? "" : showFields, contributorTags, gzip);
+
+        MockResponse response = new MockResponse()
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody(new Buffer().write(body));
+
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+
+        return delay(response);
+    }
+
+    // Returns the rendered body, built on the first request for it
+    private byte[] body(int page, int pageSize, String showFields, boolean contributorTags, boolean gzip) {
+
+        String key = page + "|" + pageSize + "|" + showFields + "|" + contributorTags + "|" + gzip;
+        byte[] body = mBodies.get(key);
+
+        if (body == null) {
+
+            String json = GuardianPayloads.searchJson(mTotalResults, page, pageSize, showFields, contributorTags,
+                    mServer.url("/thumbnails/").toString());
+
+            body = gzip ? gzip(json.getBytes(UTF_8)) : json.getBytes(UTF_8);
+            mBodies.putIfAbsent(key, body);
+        }
+
+        return body;
+    }
+
+    // Applies the configured latency to the headers and bandwidth to the body
+    private MockResponse delay(MockResponse response) {
+
+        if (mLatencyMillis > 0) {
+            response.setHeadersDelay(mLatencyMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Throttled in slices of 100 ms, for a smooth transfer
+        if (mBytesPerSecond > 0) {
+            response.throttleBody(Math.max(1, mBytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+        }
+
+        return response;
+    }
+
+    // Returns a response shaped like the API's answer to an invalid request
+    private MockResponse error(String message) {
+        return delay(new MockResponse()
+                .setResponseCode(400)
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody("{\"response\":{\"status\":\"error\",\"message\":\"" + message + "\"}}"));
+    }
+
+    private synchronized boolean injectError() {
+        return mErrorRate > 0 && mRandom.nextDouble() < mErrorRate;
+    }
+
+    private synchronized boolean nextBoolean() {
+        return mRandom.nextBoolean();
+    }
+
+    private static int intParameter(HttpUrl url, String name, int defaultValue) {
+
+        String value = url.queryParameter(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+
+        try {
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(bytes);
+            gzip.close();
+            return out.toByteArray();
+
+        } catch (IOException e) {
+
+            throw new AssertionError(e);
+
+        }
+    }
+
+    /**
+     * Configures and starts a {@link GuardianMockServer}.
+     */
+    static class Builder {
+
+        private int mTotalResults = 1000;
+
+        private int mMaxPageSize = GUARDIAN_MAX_PAGE_SIZE;
+
+        private long mLatencyMillis;
+
+        private long mBytesPerSecond;
+
+        private double mErrorRate;
+
+        private long mSeed = 42;
+
+        /**
+         * Sets the number of results matched by every query
+         */
+        Builder totalResults(int totalResults) {
+            mTotalResults = totalResults;
+            return this;
+        }
+
+        /**
+         * Sets the largest accepted page size, above the Guardian's to serve a whole query
+         * in one response
+         */
+        Builder maxPageSize(int maxPageSize) {
+            mMaxPageSize = maxPageSize;
+            return this;
+        }
+
+        /**
+         * Sets the time before the headers of every response are sent
+         */
+        Builder latencyMillis(long latencyMillis) {
+            mLatencyMillis = latencyMillis;
+            return this;
+        }
+
+        /**
+         * Sets the rate at which response bodies are sent, 0 for no limit
+         */
+        Builder bytesPerSecond(long bytesPerSecond) {
+            mBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the share of search requests failing with a server error or a dropped connection
+         */
+        Builder errorRate(double errorRate) {
+            mErrorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Sets the seed choosing the failed requests, for repeatable runs
+         */
+        Builder seed(long seed) {
+            mSeed = seed;
+            return this;
+        }
+
+        GuardianMockServer start() throws IOException {
+            GuardianMockServer server = new GuardianMockServer(this);
+            server.start();
+            return server;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.android.newsapp;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Builds synthetic Guardian "/search" responses with the same shape as the real ones, by
+ * default those of a {@code show-fields=all&show-tags=contributor} request, body included.
+ * Shared by the unit tests, the instrumented tests and the benchmark module.
+ */
+final class GuardianPayloads {
+
+    private static final String[] SECTIONS = {"World news", "Sport", "Business", "Technology", "Culture"};
+
+    private static final int BODY_PARAGRAPHS = 40;
+
+    /**
+     * Value of the "show-fields" parameter asking for every field
+     */
+    static final String ALL_FIELDS = "all";
+
+    private static final String GUARDIAN_THUMBNAILS = "https://media.guim.co.uk/";
+
+    private GuardianPayloads() {
+    }
+
+    /**
+     * Returns a UTF-8 encoded response holding the given number of results.
+     */
+    static byte[] search(int results) {
+        return searchJson(results, 1).getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Returns a response holding the given number of results for the given page.
+     */
+    static String searchJson(int results, int page) {
+        return searchJson(results * 10, page, results, ALL_FIELDS, true, GUARDIAN_THUMBNAILS);
+    }
+
+    /**
+     * Returns the given page of a query matching the given total number of results, with the
+     * same fields and tags as a Guardian response to the same request parameters.
+     *
+     * @param total           number of results matched by the query
+     * @param page            requested page, starting at 1, must not be beyond the last one
+     * @param pageSize        number of results per page
+     * @param showFields      value of the "show-fields" parameter, "all" or a comma-separated list
+     * @param contributorTags whether the "show-tags" parameter asks for the contributor tags
+     * @param thumbnailBase   web address the thumbnail paths are appended to
+     */
+    static String searchJson(int total, int page, int pageSize, String showFields, boolean contributorTags,
+                             String thumbnailBase) {
+
+        boolean allFields = ALL_FIELDS.equals(showFields);
+        Set<String> fields = new HashSet<>(Arrays.asList(showFields.split(",")));
+        int first = (page - 1) * pageSize;
+        int results = Math.max(0, Math.min(pageSize, total - first));
+        int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+
+        StringBuilder sb = new StringBuilder(results * (allFields ? 6000 : 700) + 256);
+
+        sb.append("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\",\"total\":")
+                .append(total)
+                .append(",\"startIndex\":").append(first + 1)
+                .append(",\"pageSize\":").append(pageSize)
+                .append(",\"currentPage\":").append(page)
+                .append(",\"pages\":").append(pages)
+                .append(",\"orderBy\":\"newest\",\"results\":[");
+
+        for (int i = 0; i < results; i++) {
+
+            int n = first + i;
+            String section = SECTIONS[n % SECTIONS.length];
+
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            sb.append("{\"id\":\"world/2018/may/").append(n).append("/article-").append(n).append('"')
+                    .append(",\"type\":\"article\",\"sectionId\":\"").append(section.toLowerCase()).append('"')
+                    .append(",\"sectionName\":\"").append(section).append('"')
+                    .append(",\"webPublicationDate\":\"2018-05-0").append(1 + n % 6)
+                    .append("T1").append(n % 10).append(":3").append(n % 6).append(":00Z\"")
+                    .append(",\"webTitle\":\"Headline number ").append(n).append(" | Jane Doe\"")
+                    .append(",\"webUrl\":\"https://www.theguardian.com/world/2018/may/").append(n).append('"')
+                    .append(",\"apiUrl\":\"https://content.guardianapis.com/world/2018/may/").append(n).append('"');
+
+            if (allFields || !showFields.isEmpty()) {
+
+                sb.append(",\"fields\":{");
+                int length = sb.length();
+
+                if (allFields) {
+                    sb.append("\"headline\":\"Headline number ").append(n).append("\",");
+                }
+                if (allFields || fields.contains("trailText")) {
+                    sb.append("\"trailText\":\"Trail text for article ").append(n).append(" <br />with a tag\",");
+                }
+                if (allFields || fields.contains("byline")) {
+                    sb.append("\"byline\":\"Jane Doe\",");
+                }
+                if (allFields) {
+                    sb.append("\"wordcount\":\"").append(800 + n).append("\",");
+                }
+                if (allFields || fields.contains("thumbnail")) {
+                    sb.append("\"thumbnail\":\"").append(thumbnailBase).append(n).append("/500.jpg\",");
+                }
+                if (allFields || fields.contains("body")) {
+                    sb.append("\"body\":\"");
+                    for (int p = 0; p < BODY_PARAGRAPHS; p++) {
+                        sb.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod ")
+                                .append("tempor incididunt ut labore et dolore magna aliqua.</p>");
+                    }
+                    sb.append("\",");
+                }
+
+                // Drop the trailing comma
+                if (sb.length() > length) {
+                    sb.setLength(sb.length() - 1);
+                }
+
+                sb.append('}');
+            }
+
+            if (contributorTags) {
+                sb.append(",\"tags\":[{\"id\":\"profile/jane-doe\",\"type\":\"contributor\"")
+                        .append(",\"webTitle\":\"Jane Doe\",\"bio\":\"<p>Jane Doe is a reporter</p>\"}]");
+            }
+
+            sb.append(",\"isHosted\":false,\"pillarName\":\"News\"}");
+        }
+
+        sb.append("]}}");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that an {@link ArticleBatch} holds the same values as the parsed articles, decoded
+ * once and shared by later accesses, and that it retains at most three quarters of the heap
+ * of the {@code ArrayList<News>} it replaces for 1k and 10k articles.
+ */
+public class ArticleBatchFootprintTest {
+
+    private static final int[] SIZES = {1000, 10000};
+
+    /**
+     * Largest share of the list's heap a batch may retain, about half is measured
+     */
+    private static final double MAX_BATCH_RATIO = 0.75;
+
+    /**
+     * Articles parsed per synthetic response page
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    @Test
+    public void batch_matchesArticles() throws Exception {
+
+        List<News> articles = new ArrayList<>(parse(200));
+        articles.add(new News("a", null, null, "2018-05-06T12:34:56Z", NewsDates.parse("2018-05-06T12:34:56Z"),
+                "Title", "https://www.theguardian.com/a", "Jane Doe",
+                NewsUtils.KEY_NO_TRAIL_TEXT, null));
+        articles.add(new News("b", "sport", "Sport", "", NewsDates.UNKNOWN, "", "https://www.theguardian.com/b",
+                "No author", "", NewsUtils.KEY_NO_THUMBNAIL));
+
+        ArticleBatch batch = ArticleBatch.of(articles);
+        ArticleBatch.Cursor cursor = batch.cursor();
+
+        assertEquals(articles.size(), batch.size());
+
+        for (int i = 0; i < articles.size(); i++) {
+
+            News expected = articles.get(i);
+            News actual = batch.get(i);
+
+            assertTrue(cursor.moveToNext());
+            assertFields(expected, actual);
+            assertEquals(expected.getId(), cursor.getId());
+            assertEquals(expected.getSectionId(), cursor.getSectionId());
+            assertEquals(expected.getSectionName(), cursor.getSectionName());
+            assertEquals(expected.getArticleAuthor(), cursor.getArticleAuthor());
+            assertEquals(expected.getThumbnailUrl(), cursor.getThumbnailUrl());
+            assertSame(actual, batch.get(i));
+            assertSame(actual.getArticleTitle(), cursor.getArticleTitle());
+            assertEquals(expected.getArticleAuthor() == null, cursor.getAuthorCode() < 0);
+        }
+
+        assertFalse(cursor.moveToNext());
+        assertNull(batch.get(articles.size() - 2).getThumbnailUrl());
+        assertEquals(batch, ArticleBatch.of(batch));
+    }
+
+    @Test
+    public void footprint_beforeAfter() throws Exception {
+
+        for (int size : SIZES) {
+
+            List<News> articles = parse(size);
+            long withList = usedHeap();
+
+            ArticleBatch batch = ArticleBatch.of(articles);
+            long withBoth = usedHeap();
+
+            assertEquals(size, articles.size());
+            articles = null;
+            long withBatch = usedHeap();
+
+            long listBytes = withBoth - withBatch;
+            long batchBytes = withBoth - withList;
+
+            assertEquals(size, batch.size());
+            assertTrue(size + " articles: batch " + batchBytes + " B, list " + listBytes + " B",
+                    batchBytes < listBytes * MAX_BATCH_RATIO);
+        }
+    }
+
+    private static void assertFields(News expected, News actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getSectionId(), actual.getSectionId());
+        assertEquals(expected.getSectionName(), actual.getSectionName());
+        assertEquals(expected.getDatePublished(), actual.getDatePublished());
+        assertEquals(expected.getPublishedMillis(), actual.getPublishedMillis());
+        assertEquals(expected.getArticleTitle(), actual.getArticleTitle());
+        assertEquals(expected.getArticleUrl(), actual.getArticleUrl());
+        assertEquals(expected.getArticleAuthor(), actual.getArticleAuthor());
+        assertEquals(expected.getTrailText(), actual.getTrailText());
+        assertEquals(expected.getThumbnailUrl(), actual.getThumbnailUrl());
+    }
+
+    // Parses synthetic responses page by page, as the app receives them
+    private static List<News> parse(int size) throws Exception {
+
+        List<News> articles = new ArrayList<>(size);
+
+        for (int page = 1; articles.size() < size; page++) {
+            int results = Math.min(PAGE_SIZE, size - articles.size());
+            byte[] payload = GuardianPayloads.searchJson(results, page).getBytes(Charset.forName("UTF-8"));
+            articles.addAll(NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload)));
+        }
+
+        return articles;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+
+        // A few collections, until the figure settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return used;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.android.newsapp;
+
+import com.google.common.io.CountingInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a cancelled fetch stops its work: no request is sent or retried, the connection
+ * of the response being read is closed, and the parse stops at the next article.
+ */
+public class NewsCancellationTest {
+
+    private MockWebServer mServer;
+
+    private ScheduledExecutorService mScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mScheduler.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void parse_stopsAtArticleBoundary() throws Exception {
+
+        byte[] payload = GuardianPayloads.search(1000);
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(payload));
+
+        final NewsCancellation cancellation = new NewsCancellation();
+        final AtomicInteger batches = new AtomicInteger();
+
+        try {
+
+            NewsUtils.extractFeatureFromJson(in, new NewsUtils.ParseListener() {
+                @Override
+                public void onArticlesParsed(List<News> articles) {
+                    batches.incrementAndGet();
+                    assertEquals(NewsUtils.FIRST_BATCH_SIZE, articles.size());
+                    cancellation.cancel();
+                }
+            }, cancellation);
+
+            fail("The parse should have been cancelled");
+
+        } catch (NewsCancellation.CanceledException expected) {
+
+            assertEquals(1, batches.get());
+
+            // Only the buffered start of the response was read
+            assertTrue(in.getCount() + " of " + payload.length + " bytes read", in.getCount() < payload.length / 20);
+
+        }
+    }
+
+    @Test
+    public void execute_canceledBeforeSend_sendsNothing() throws Exception {
+
+        NewsCancellation cancellation = new NewsCancellation();
+        cancellation.cancel();
+
+        try {
+            client(new NewsCircuitBreaker(1, 60000)).execute(request(), cancellation);
+            fail("The request should have been cancelled");
+        } catch (NewsCancellation.CanceledException expected) {
+            assertEquals(0, mServer.getRequestCount());
+        }
+    }
+
+    @Test
+    public void execute_canceledDuringBackoff_isNotRetried() throws Exception {
+
+        final NewsCancellation cancellation = new NewsCancellation();
+
+        // Cancelled while the first attempt is being answered, so the retry waits in its backoff
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                cancellation.cancel();
+                return new MockResponse().setResponseCode(503);
+            }
+        });
+
+        long start = System.nanoTime();
+
+        try {
+            client(new NewsCircuitBreaker(10, 60000)).execute(request(), cancellation);
+            fail("The request should have been cancelled");
+        } catch (NewsCancellation.CanceledException expected) {
+            assertEquals(1, mServer.getRequestCount());
+        }
+
+        // The backoff of up to 10 s was cut short
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+
+    @Test
+    public void execute_canceledCall_isNotCountedAsFailure() throws Exception {
+
+        final NewsCancellation cancellation = new NewsCancellation();
+        NewsCircuitBreaker breaker = new NewsCircuitBreaker(1, 60000);
+
+        // The headers would arrive after 10 s
+        mServer.enqueue(new MockResponse().setHeadersDelay(10, TimeUnit.SECONDS).setBody("late"));
+        cancelLater(cancellation, 200);
+
+        try {
+            client(breaker).execute(request(), cancellation);
+            fail("The request should have been cancelled");
+        } catch (NewsCancellation.CanceledException expected) {
+            assertFalse(breaker.isOpen());
+            assertEquals(1, mServer.getRequestCount());
+        }
+    }
+
+    @Test
+    public void execute_canceledTrial_letsNextTrialThrough() throws Exception {
+
+        final NewsCancellation cancellation = new NewsCancellation();
+        NewsCircuitBreaker breaker = new NewsCircuitBreaker(1, 10);
+        NewsHttpClient client = new NewsHttpClient(new OkHttpClient(), 1, 1, 1, breaker);
+
+        // Opens the breaker
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        client.execute(request()).close();
+        assertTrue(breaker.isOpen());
+
+        Thread.sleep(20);
+
+        // The trial request is cancelled while waiting for its headers
+        mServer.enqueue(new MockResponse().setHeadersDelay(10, TimeUnit.SECONDS).setBody("late"));
+        cancelLater(cancellation, 200);
+
+        try {
+            client.execute(request(), cancellation);
+            fail("The request should have been cancelled");
+        } catch (NewsCancellation.CanceledException expected) {
+            assertTrue(breaker.isOpen());
+        }
+
+        // The next trial is sent, and closes the breaker
+        mServer.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = client.execute(request());
+        assertEquals(200, response.code());
+        response.close();
+        assertFalse(breaker.isOpen());
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void fetchNewsData_cancelWhileReading_closesConnection() throws Exception {
+
+        // About 60 bytes per second, the first batch of articles would take minutes to arrive
+        mServer.enqueue(new MockResponse()
+                .setBody(GuardianPayloads.searchJson(50, 1))
+                .throttleBody(6, 100, TimeUnit.MILLISECONDS));
+
+        final AtomicInteger batches = new AtomicInteger();
+        NewsCancellation cancellation = new NewsCancellation();
+        cancelLater(cancellation, 500);
+
+        long start = System.nanoTime();
+
+        List<News> articles = NewsUtils.fetchNewsData(mServer.url("/search").toString(), null,
+                new NewsUtils.ParseListener() {
+                    @Override
+                    public void onArticlesParsed(List<News> articles) {
+                        batches.incrementAndGet();
+                    }
+                }, cancellation);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The blocked read failed as soon as the call was cancelled
+        assertTrue(articles.isEmpty());
+        assertEquals(0, batches.get());
+        assertTrue("Returned after " + millis + " ms", millis < 3000);
+    }
+
+    @Test
+    public void fetchAll_cancel_abortsEverySection() throws Exception {
+
+        // No section would get its headers before the test times out
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setHeadersDelay(60, TimeUnit.SECONDS).setBody("late"));
+        }
+
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            urls.add(mServer.url("/search?section=" + i).toString());
+        }
+
+        // Without a cache nor a store: a forced refresh reaches neither
+        NewsRequests requests = new NewsRequests(null, null, 0);
+        final AtomicInteger sections = new AtomicInteger();
+        NewsCancellation cancellation = new NewsCancellation();
+        long canceled = NewsMetrics.CANCELLATIONS.get();
+
+        cancelLater(cancellation, 500);
+
+        NewsFanOut.fetchAll(urls, requests, true, cancellation, new NewsFanOut.Callback() {
+            @Override
+            public void onSectionLoaded(int index, List<News> articles) {
+                sections.incrementAndGet();
+            }
+        });
+
+        assertEquals(0, sections.get());
+
+        // Every section's call was aborted, not only the last one registered
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        while (NewsMetrics.CANCELLATIONS.get() - canceled < urls.size() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(urls.size(), NewsMetrics.CANCELLATIONS.get() - canceled);
+        assertEquals(urls.size(), mServer.getRequestCount());
+    }
+
+    private void cancelLater(final NewsCancellation cancellation, long delayMillis) {
+        mScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancellation.cancel();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static NewsHttpClient client(NewsCircuitBreaker breaker) {
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .readTimeout(30, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+        return new NewsHttpClient(okHttpClient, 3, 10000, 10000, breaker);
+    }
+
+    private Request request() {
+        return new Request.Builder().url(mServer.url("/search")).build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link NewsDates} against {@link SimpleDateFormat}, and that the parse-once path
+ * allocates less than a tenth of the previous per-row SimpleDateFormat path.
+ */
+public class NewsDatesBenchmarkTest {
+
+    private static final String INPUT_FORMAT = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private static final String OUTPUT_FORMAT = "yyyy-MM-dd";
+
+    private static final int ITERATIONS = 200000;
+
+    /**
+     * Largest share of the previous path's allocations the new path may make
+     */
+    private static final double MAX_ALLOCATION_RATIO = 0.1;
+
+    private static final String[] DATES = {
+            "2018-05-01T10:30:00Z", "2018-05-01T18:02:11Z", "2018-05-02T07:45:59Z",
+            "2018-05-02T23:59:59Z", "2018-05-03T00:00:00Z", "2018-05-03T12:12:12Z"};
+
+    @Test
+    public void parse_matchesSimpleDateFormat() throws Exception {
+
+        SimpleDateFormat format = new SimpleDateFormat(INPUT_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        for (long millis = -86400000L * 365 * 30; millis < 86400000L * 365 * 60; millis += 86400000L * 7 + 3601000L) {
+            String text = format.format(new Date(millis));
+            assertEquals(text, millis, NewsDates.parse(text));
+        }
+
+        assertEquals(format.parse("2018-05-06T11:34:56Z").getTime() + 500,
+                NewsDates.parse("2018-05-06T12:34:56.5+01:00"));
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse(""));
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse("2018-13-06T12:34:56Z"));
+        assertEquals(NewsDates.UNKNOWN, NewsDates.parse("2018-05-06 12:34:56Z"));
+    }
+
+    @Test
+    public void dayFormatter_usesLocalDay() {
+
+        NewsDates.DayFormatter formatter = new NewsDates.DayFormatter(OUTPUT_FORMAT, Locale.US,
+                TimeZone.getTimeZone("Europe/Warsaw"));
+
+        assertEquals("2018-05-07", formatter.format(NewsDates.parse("2018-05-06T22:30:00Z")));
+        assertEquals("2018-05-06", formatter.format(NewsDates.parse("2018-05-06T21:30:00Z")));
+        assertEquals("", formatter.format(NewsDates.UNKNOWN));
+    }
+
+    @Test
+    public void newsDates_beforeAfter() throws Exception {
+
+        // Previous path: two SimpleDateFormat instances per bound row
+        Runnable before = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    SimpleDateFormat input = new SimpleDateFormat(INPUT_FORMAT, Locale.getDefault());
+                    SimpleDateFormat output = new SimpleDateFormat(OUTPUT_FORMAT, Locale.getDefault());
+                    try {
+                        output.format(input.parse(DATES[i % DATES.length]));
+                    } catch (java.text.ParseException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+        };
+
+        // New path: parsed once to epoch millis, displayed through a cached formatter
+        final NewsDates.DayFormatter formatter = new NewsDates.DayFormatter(OUTPUT_FORMAT, Locale.getDefault());
+        Runnable after = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < ITERATIONS; i++) {
+                    formatter.format(NewsDates.parse(DATES[(i / 1000) % DATES.length]));
+                }
+            }
+        };
+
+        before.run();
+        after.run();
+
+        long beforeBytes = allocatedBytes(before);
+        long afterBytes = allocatedBytes(after);
+
+        assertTrue("before " + beforeBytes / ITERATIONS + " B/op, after " + afterBytes / ITERATIONS + " B/op",
+                afterBytes < beforeBytes * MAX_ALLOCATION_RATIO);
+    }
+
+    // Returns the bytes allocated by the current thread while running the path
+    private static long allocatedBytes(Runnable path) {
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        path.run();
+
+        return threads.getThreadAllocatedBytes(thread) - allocated;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the matches of {@link NewsFilter} and how it follows the changes of the articles' text.
+ * Its time per keystroke is measured by the JMH FilterBenchmark of the benchmark module.
+ */
+public class NewsFilterTest {
+
+    @Test
+    public void filter_matchesWordPrefixes() {
+
+        NewsItem first = item("a", "Brexit talks resume in Brussels", "Jane Doe", "Negotiators meet again");
+        NewsItem second = item("b", "Premier League: late goal", "John Roe", "A Brexit-free evening");
+        NewsItem third = item("c", "Markets rally", "", "Shares rose in Tokyo");
+        List<NewsItem> articles = Arrays.asList(first, second, third);
+
+        NewsFilter filter = new NewsFilter();
+        filter.index(articles);
+
+        assertSame(articles, filter.filter(articles, "  "));
+        assertEquals(Arrays.asList(first, second), filter.filter(articles, "brex"));
+        assertEquals(Arrays.asList(first), filter.filter(articles, "BREXIT bru"));
+        assertEquals(Arrays.asList(second), filter.filter(articles, "roe"));
+        assertEquals(Arrays.asList(third), filter.filter(articles, "tok"));
+        assertEquals(0, filter.filter(articles, "rexit").size());
+        assertEquals(0, filter.filter(articles, "markets brexit").size());
+    }
+
+    @Test
+    public void index_addsDeliveredArticlesOnce() {
+
+        NewsItem first = item("a", "Brexit talks", "", "");
+        NewsItem second = item("b", "Brexit vote", "", "");
+
+        NewsFilter filter = new NewsFilter();
+        filter.index(Arrays.asList(first));
+
+        List<NewsItem> appended = Arrays.asList(first, second);
+        filter.index(appended);
+
+        assertEquals(appended, filter.filter(appended, "brexit"));
+        assertEquals(Arrays.asList(second), filter.filter(appended, "vote"));
+    }
+
+    @Test
+    public void filter_ignoresAuthorLabel() {
+
+        List<NewsItem> articles = Arrays.asList(item("a", "Brexit talks", "Jane Doe", ""));
+
+        NewsFilter filter = new NewsFilter();
+        filter.index(articles);
+
+        assertEquals(articles, filter.filter(articles, "jane"));
+        assertEquals(0, filter.filter(articles, "written").size());
+        assertEquals(0, filter.filter(articles, "by").size());
+    }
+
+    @Test
+    public void index_replacesChangedText() {
+
+        List<NewsItem> first = Arrays.asList(item("a", "Brexit talks", "", "Negotiators meet"));
+        List<NewsItem> refreshed = Arrays.asList(item("a", "Brexit deal", "", "Negotiators agree"));
+
+        NewsFilter filter = new NewsFilter();
+        filter.index(first);
+        filter.index(refreshed);
+
+        assertEquals(refreshed, filter.filter(refreshed, "deal agree"));
+        assertEquals(0, filter.filter(refreshed, "talks").size());
+        assertEquals(0, filter.filter(refreshed, "meet").size());
+    }
+
+    @Test
+    public void index_addsTextOfRehydratedStub() {
+
+        NewsItem full = item("a", "Brexit talks", "Jane Doe", "Negotiators meet");
+        NewsItem stub = new NewsItem(full.getId(), full.getStableId(), full.getPublishedMillis(), full.getTitle());
+        List<NewsItem> articles = Arrays.asList(stub);
+
+        NewsFilter filter = new NewsFilter();
+        filter.index(articles);
+
+        assertEquals(articles, filter.filter(articles, "brexit"));
+        assertEquals(0, filter.filter(articles, "jane").size());
+
+        stub.rehydrate(full);
+        filter.index(articles);
+
+        assertEquals(articles, filter.filter(articles, "jane negotiators"));
+
+        // Shrunk again, it keeps the text it was indexed with
+        stub.shrink();
+        filter.index(articles);
+
+        assertEquals(articles, filter.filter(articles, "jane negotiators"));
+    }
+
+    private static NewsItem item(String id, String title, String author, String trailText) {
+        return new NewsItem(id, id.hashCode(), 0, "World news", title, author, "Written by:\n" + author,
+                "2018-05-06", trailText, null, "https://www.theguardian.com/" + id);
+    }
+}
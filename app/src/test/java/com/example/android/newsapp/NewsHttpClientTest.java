@@ -0,0 +1,218 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the retries, the circuit breaker, the connection reuse and the conditional requests of
+ * {@link NewsHttpClient} and {@link NewsUtils} against a local mock web server.
+ */
+public class NewsHttpClientTest {
+
+    @Rule
+    public final TemporaryFolder mTemp = new TemporaryFolder();
+
+    private MockWebServer mServer;
+
+    private NewsCircuitBreaker mBreaker;
+
+    private NewsHttpClient mClient;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        mBreaker = new NewsCircuitBreaker(4, 60000);
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .readTimeout(200, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+        mClient = new NewsHttpClient(okHttpClient, 3, 1, 5, mBreaker);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void serverError_isRetried() throws Exception {
+
+        mServer.enqueue(new MockResponse().setResponseCode(503));
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mServer.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = mClient.execute(request());
+
+        assertEquals(200, response.code());
+        assertEquals("ok", response.body().string());
+        assertEquals(3, mServer.getRequestCount());
+        assertFalse(mBreaker.isOpen());
+    }
+
+    @Test
+    public void timeout_isRetried() throws Exception {
+
+        mServer.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        mServer.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = mClient.execute(request());
+
+        assertEquals(200, response.code());
+        response.close();
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void retries_areBounded() throws Exception {
+
+        for (int i = 0; i < 5; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        Response response = mClient.execute(request());
+
+        assertEquals(503, response.code());
+        response.close();
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    @Test
+    public void clientError_isNotRetried() throws Exception {
+
+        mServer.enqueue(new MockResponse().setResponseCode(404));
+
+        Response response = mClient.execute(request());
+
+        assertEquals(404, response.code());
+        response.close();
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void breaker_opensAfterConsecutiveFailures() throws Exception {
+
+        for (int i = 0; i < 6; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        // 3 failed attempts, then 1 more trips the breaker in the second request
+        mClient.execute(request()).close();
+
+        try {
+            mClient.execute(request()).close();
+            fail("The breaker should have opened");
+        } catch (NewsHttpClient.CircuitOpenException expected) {
+            assertTrue(mBreaker.isOpen());
+        }
+
+        assertEquals(4, mServer.getRequestCount());
+
+        // Rejected without reaching the server
+        try {
+            mClient.execute(request()).close();
+            fail("The breaker should still be open");
+        } catch (NewsHttpClient.CircuitOpenException expected) {
+            assertEquals(4, mServer.getRequestCount());
+        }
+    }
+
+    @Test
+    public void breaker_closesAfterSuccessfulTrial() throws Exception {
+
+        NewsCircuitBreaker breaker = new NewsCircuitBreaker(1, 10);
+        NewsHttpClient client = new NewsHttpClient(new OkHttpClient(), 1, 1, 1, breaker);
+
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mServer.enqueue(new MockResponse().setBody("ok"));
+
+        client.execute(request()).close();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.allowRequest());
+
+        Thread.sleep(20);
+
+        Response response = client.execute(request());
+        assertEquals(200, response.code());
+        response.close();
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void fetchNewsData_reusesConnection() throws Exception {
+
+        mServer.enqueue(new MockResponse().setBody(GuardianPayloads.searchJson(10, 1)));
+        mServer.enqueue(new MockResponse().setBody(GuardianPayloads.searchJson(10, 2)));
+
+        List<News> first = NewsUtils.fetchNewsData(mServer.url("/search?page=1").toString());
+        List<News> second = NewsUtils.fetchNewsData(mServer.url("/search?page=2").toString());
+
+        assertEquals(10, first.size());
+        assertEquals(10, second.size());
+
+        // Both requests went over the same keep-alive connection
+        assertEquals(0, mServer.takeRequest().getSequenceNumber());
+        assertEquals(1, mServer.takeRequest().getSequenceNumber());
+    }
+
+    @Test
+    public void fetchNewsData_notModifiedWithoutStoredBody_fetchesAgain() throws Exception {
+
+        final File directory = mTemp.newFolder();
+        NewsCache cache = new NewsCache(directory);
+        String url = mServer.url("/search").toString();
+
+        mServer.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(GuardianPayloads.searchJson(10, 1)));
+        assertEquals(10, NewsUtils.fetchNewsData(url, cache).size());
+
+        // The stored body is evicted while the conditional request is in flight
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+
+                if (request.getHeader("If-None-Match") == null) {
+                    return new MockResponse().setHeader("ETag", "\"v1\"").setBody(GuardianPayloads.searchJson(10, 1));
+                }
+
+                for (File file : directory.listFiles()) {
+                    assertTrue(file.delete());
+                }
+
+                return new MockResponse().setResponseCode(304);
+            }
+        });
+
+        assertEquals(10, NewsUtils.fetchNewsData(url, cache).size());
+
+        mServer.takeRequest();
+        assertEquals("\"v1\"", mServer.takeRequest().getHeader("If-None-Match"));
+        assertNull(mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(3, mServer.getRequestCount());
+    }
+
+    private Request request() {
+        return new Request.Builder().url(mServer.url("/search")).build();
+    }
+}
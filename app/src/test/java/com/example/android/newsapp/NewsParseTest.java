@@ -0,0 +1,98 @@
+package com.example.android.newsapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the streaming parser in {@link NewsUtils} against the previous read-to-String +
+ * {@link JSONObject} tree approach for 50, 200 and 1000 results per page. The time, allocations
+ * and peak heap of both approaches are compared by ParseBenchmark and ParseHeapBenchmark in
+ * the benchmark module.
+ */
+public class NewsParseTest {
+
+    private static final int[] PAGE_SIZES = {50, 200, 1000};
+
+    @Test
+    public void streamingParser_matchesTreeParser() throws Exception {
+        for (int size : PAGE_SIZES) {
+            assertSameArticles(size);
+        }
+    }
+
+    private static void assertSameArticles(int size) throws Exception {
+
+        byte[] payload = GuardianPayloads.search(size);
+
+        List<News> tree = treeParse(new ByteArrayInputStream(payload));
+        List<News> streamed = NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload));
+
+        assertEquals(size, tree.size());
+        assertEquals(tree.size(), streamed.size());
+
+        for (int i = 0; i < tree.size(); i++) {
+            assertEquals(tree.get(i).getId(), streamed.get(i).getId());
+            assertEquals(tree.get(i).getSectionId(), streamed.get(i).getSectionId());
+            assertEquals(tree.get(i).getSectionName(), streamed.get(i).getSectionName());
+            assertEquals(tree.get(i).getDatePublished(), streamed.get(i).getDatePublished());
+            assertEquals(tree.get(i).getPublishedMillis(), streamed.get(i).getPublishedMillis());
+            assertEquals(tree.get(i).getArticleTitle(), streamed.get(i).getArticleTitle());
+            assertEquals(tree.get(i).getArticleUrl(), streamed.get(i).getArticleUrl());
+            assertEquals(tree.get(i).getArticleAuthor(), streamed.get(i).getArticleAuthor());
+            assertEquals(tree.get(i).getTrailText(), streamed.get(i).getTrailText());
+            assertEquals(tree.get(i).getThumbnailUrl(), streamed.get(i).getThumbnailUrl());
+        }
+    }
+
+    /**
+     * The parsing path used before the streaming parser: the whole response is read into a
+     * String line by line and turned into a {@link JSONObject} tree.
+     */
+    private static List<News> treeParse(InputStream inputStream) throws Exception {
+
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        String line = reader.readLine();
+
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+
+        JSONArray resultsArray = new JSONObject(output.toString())
+                .getJSONObject("response")
+                .getJSONArray("results");
+
+        List<News> articles = new ArrayList<>();
+
+        for (int i = 0; i < resultsArray.length(); i++) {
+
+            JSONObject currentArticle = resultsArray.getJSONObject(i);
+            JSONObject fields = currentArticle.getJSONObject("fields");
+
+            String date = currentArticle.optString("webPublicationDate");
+
+            articles.add(new News(currentArticle.optString("id"), currentArticle.optString("sectionId"),
+                    currentArticle.optString("sectionName"),
+                    date, NewsDates.parse(date),
+                    currentArticle.optString("webTitle"),
+                    currentArticle.optString("webUrl"),
+                    fields.optString("byline", "No author"),
+                    fields.optString("trailText", "No trail text"),
+                    fields.optString("thumbnail", "No thumbnail")));
+        }
+
+        return articles;
+    }
+}
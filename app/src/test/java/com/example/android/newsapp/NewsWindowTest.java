@@ -0,0 +1,284 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks which articles of a {@link NewsWindow} keep their text as the list scrolls, that only
+ * its own copies of stored articles are shrunk, and compares the retained heap of 200, 2k and 20k loaded articles with and without the window.
+ */
+public class NewsWindowTest {
+
+    private static final int[] SIZES = {200, 2000, 20000};
+
+    private static final int MARGIN = 50;
+
+    /**
+     * Articles parsed per synthetic response page
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String THUMBNAILS = "https://media.guim.co.uk/";
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private final List<int[]> mRebound = new ArrayList<>();
+
+    @Test
+    public void window_followsVisibleRows() throws Exception {
+
+        NewsWindow window = window(storeOf(format(parse(1000))));
+        List<NewsItem> articles = window.own(format(parse(1000)));
+
+        window.setArticles(articles, articles, 0, 9);
+
+        assertFull(articles, 0, 59);
+        assertEquals(0, mRebound.size());
+
+        // Within half a margin of the end of the band
+        window.onScrolled(20, 29);
+        assertFull(articles, 0, 59);
+
+        window.onScrolled(40, 49);
+        assertFull(articles, 0, 99);
+        assertEquals(1, mRebound.size());
+
+        window.onScrolled(600, 609);
+        assertFull(articles, 550, 659);
+        assertEquals(2, mRebound.size());
+        assertEquals(550, mRebound.get(1)[0]);
+        assertEquals(659, mRebound.get(1)[1]);
+
+        window.onScrolled(990, 999);
+        assertFull(articles, 940, 999);
+    }
+
+    @Test
+    public void window_shrinksArticlesHiddenByFilter() throws Exception {
+
+        NewsWindow window = window(storeOf(format(parse(1000))));
+        List<NewsItem> articles = window.own(format(parse(1000)));
+        List<NewsItem> shown = new ArrayList<>();
+
+        for (int i = 0; i < articles.size(); i += 10) {
+            shown.add(articles.get(i));
+        }
+
+        window.setArticles(articles, shown, 0, 9);
+
+        for (int i = 0; i < articles.size(); i++) {
+            assertEquals("article " + i, i % 10 == 0 && i < 600, !articles.get(i).isStub());
+        }
+    }
+
+    @Test
+    public void window_rehydratesStubsOfShortList() throws Exception {
+
+        List<NewsItem> full = format(parse(30));
+        List<NewsItem> restored = new ArrayList<>();
+
+        for (NewsItem article : full) {
+            restored.add(new NewsItem(article.getId(), article.getStableId(), article.getPublishedMillis(),
+                    article.getTitle()));
+        }
+
+        NewsWindow window = window(storeOf(format(parse(30))));
+        List<NewsItem> articles = window.own(restored);
+        window.setArticles(articles, articles, -1, -1);
+
+        assertEquals(full, articles);
+        assertEquals(1, mRebound.size());
+    }
+
+    @Test
+    public void window_shrinksCopiesOnly() throws Exception {
+
+        List<NewsItem> delivered = format(parse(1000));
+        NewsWindow window = window(storeOf(format(parse(1000))));
+
+        List<NewsItem> articles = window.own(delivered);
+        window.setArticles(articles, articles, 0, 9);
+        assertFull(articles, 0, 59);
+
+        // The delivered list, e.g. cached as a recent result, stays whole
+        assertFull(delivered, 0, 999);
+
+        // Delivered again, the stubs are kept (their text is read back from the store, updated
+        // along with the delivery) and only the changed articles are copied again
+        List<NewsItem> again = new ArrayList<>(delivered);
+        NewsItem changed = delivered.get(5);
+        again.set(5, new NewsItem(changed.getId(), changed.getStableId(), changed.getPublishedMillis(),
+                changed.getCategory(), changed.getTitle(), changed.getArticleAuthor(), changed.getAuthorLine(),
+                changed.getDateLine(), "Updated trail text", changed.getThumbnailUrl(), changed.getArticleUrl()));
+
+        List<NewsItem> owned = window.own(again);
+
+        assertSame(articles.get(100), owned.get(100));
+        assertTrue(owned.get(100).isStub());
+        assertSame(articles.get(6), owned.get(6));
+        assertEquals("Updated trail text", owned.get(5).getTrailText());
+    }
+
+    @Test
+    public void window_keepsArticlesNotStoredWhole() throws Exception {
+
+        List<NewsItem> formatted = format(parse(1000));
+        Map<String, NewsItem> store = storeOf(formatted.subList(0, 500));
+
+        NewsWindow window = window(store);
+        List<NewsItem> articles = window.own(formatted);
+        window.setArticles(articles, articles, 0, 9);
+
+        for (int i = 0; i < articles.size(); i++) {
+            assertEquals("article " + i, i >= 60 && i < 500, articles.get(i).isStub());
+        }
+    }
+
+    @Test
+    public void footprint_flatWithWindow() throws Exception {
+
+        long[] whole = new long[SIZES.length];
+        long[] windowed = new long[SIZES.length];
+
+        for (int s = 0; s < SIZES.length; s++) {
+
+            int size = SIZES[s];
+
+            // Stands in for the store, measured apart from the list
+            Map<String, NewsItem> store = storeOf(format(parse(size)));
+            long base = usedHeap();
+
+            List<NewsItem> articles = format(parse(size));
+            long withWhole = usedHeap();
+
+            // The window's copies replace the delivered articles
+            NewsWindow window = window(store);
+            articles = window.own(articles);
+            window.setArticles(articles, articles, 0, 9);
+            long withWindow = usedHeap();
+
+            whole[s] = withWhole - base;
+            windowed[s] = withWindow - base;
+
+            assertEquals(size, articles.size());
+            assertEquals(size, store.size());
+        }
+
+        // A short list keeps all of its text (plus the headers of the window's copies), a long
+        // one only grows by the size of its stubs
+        int last = SIZES.length - 1;
+        assertEquals(whole[0], windowed[0], whole[0] / 5);
+        assertTrue("whole " + whole[last] + " B, windowed " + windowed[last] + " B", windowed[last] < whole[last] / 2);
+    }
+
+    private NewsWindow window(final Map<String, NewsItem> store) {
+
+        NewsWindow.Source source = new NewsWindow.Source() {
+            @Override
+            public Map<String, NewsItem> load(List<String> ids) {
+
+                Map<String, NewsItem> items = new HashMap<>();
+
+                for (String id : ids) {
+                    if (store.containsKey(id)) {
+                        items.put(id, store.get(id));
+                    }
+                }
+
+                return items;
+            }
+
+            @Override
+            public Set<String> stored(List<String> ids) {
+
+                Set<String> stored = new HashSet<>();
+
+                for (String id : ids) {
+                    if (store.containsKey(id)) {
+                        stored.add(id);
+                    }
+                }
+
+                return stored;
+            }
+        };
+
+        return new NewsWindow(MARGIN, source, DIRECT, DIRECT, new NewsWindow.Listener() {
+            @Override
+            public void onArticlesRehydrated(List<NewsItem> shown, int first, int last) {
+                mRebound.add(new int[]{first, last});
+            }
+        });
+    }
+
+    private static void assertFull(List<NewsItem> articles, int first, int last) {
+        for (int i = 0; i < articles.size(); i++) {
+            boolean full = i >= first && i <= last;
+            assertEquals("article " + i, full, !articles.get(i).isStub());
+            if (!full) {
+                assertFalse(articles.get(i).getTitle().isEmpty());
+            }
+        }
+    }
+
+    private static Map<String, NewsItem> storeOf(List<NewsItem> articles) {
+        Map<String, NewsItem> store = new HashMap<>(articles.size() * 2);
+        for (NewsItem article : articles) {
+            store.put(article.getId(), article);
+        }
+        return store;
+    }
+
+    private static List<NewsItem> format(List<News> articles) {
+        return new NewsFormatter("Written by:\n", "Published on:\n", "\u2026", "yyyy-MM-dd").format(articles);
+    }
+
+    // Parses synthetic responses page by page, as the app receives them
+    private static List<News> parse(int size) throws Exception {
+
+        List<News> articles = new ArrayList<>(size);
+
+        for (int page = 1; articles.size() < size; page++) {
+            String json = GuardianPayloads.searchJson(size, page, PAGE_SIZE, GuardianPayloads.ALL_FIELDS, true,
+                    THUMBNAILS);
+            byte[] payload = json.getBytes(Charset.forName("UTF-8"));
+            articles.addAll(NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload)));
+        }
+
+        return articles;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+
+        // A few collections, until the figure settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return used;
+    }
+}
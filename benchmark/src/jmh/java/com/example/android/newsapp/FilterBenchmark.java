@@ -0,0 +1,101 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a keystroke of {@link NewsFilter} over 10k loaded articles, indexed page by page
+ * as the loaders deliver them. A keystroke must stay well within a frame (16 ms) to keep the
+ * typing smooth.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    private static final int ARTICLES = 10000;
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"b", "brex", "brexit", "brexit t", "brexit talks"})
+    public String query;
+
+    private NewsFilter filter;
+
+    private List<NewsItem> articles;
+
+    @Setup
+    public void setUp() {
+
+        articles = articles(ARTICLES);
+        filter = new NewsFilter();
+
+        for (int page = 0; page < ARTICLES; page += PAGE_SIZE) {
+            filter.index(articles.subList(0, page + PAGE_SIZE));
+        }
+    }
+
+    @Benchmark
+    public List<NewsItem> filter() {
+        return filter.filter(articles, query);
+    }
+
+    // Builds articles from a vocabulary of pseudo-words with a few common ones
+    private static List<NewsItem> articles(int count) {
+
+        Random random = new Random(42);
+        String[] vocabulary = new String[5000];
+
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+
+        vocabulary[0] = "brexit";
+        vocabulary[1] = "talks";
+        vocabulary[2] = "the";
+
+        List<NewsItem> articles = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String id = "article/" + i;
+            String author = sentence(random, vocabulary, 2);
+            articles.add(new NewsItem(id, id.hashCode(), 0, "World news", sentence(random, vocabulary, 10),
+                    author, "Written by:\n" + author, "2018-05-06", sentence(random, vocabulary, 30), null,
+                    "https://www.theguardian.com/" + id));
+        }
+
+        return articles;
+    }
+
+    private static String sentence(Random random, String[] vocabulary, int words) {
+
+        StringBuilder sentence = new StringBuilder();
+
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            // Skewed towards the first words, like the words of real articles
+            int index = (int) (vocabulary.length * Math.pow(random.nextDouble(), 3));
+            sentence.append(vocabulary[index]);
+        }
+
+        return sentence.toString();
+    }
+}
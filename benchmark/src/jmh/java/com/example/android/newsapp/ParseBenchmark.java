@@ -0,0 +1,139 @@
+package com.example.android.newsapp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NewsUtils#extractFeatureFromJson(InputStream)} on Guardian payloads of
+ * several sizes, against the tree parse it replaced as a baseline. A recorded response placed
+ * in src/jmh/resources/payloads/search-N.json is used when present, otherwise a synthetic one
+ * of the same shape is generated. Their peak heap is measured by {@link ParseHeapBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int results;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = payload(results);
+    }
+
+    @Benchmark
+    public List<News> extractFeatureFromJson() throws IOException {
+        return NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public List<News> treeParse() throws IOException {
+        return treeParse(new ByteArrayInputStream(payload));
+    }
+
+    // Returns the recorded response with the given number of results, or a synthetic one
+    static byte[] payload(int results) throws IOException {
+        byte[] payload = recordedPayload(results);
+        return payload != null ? payload : GuardianPayloads.search(results);
+    }
+
+    /**
+     * The parsing path used before the streaming parser: the whole response is read into a
+     * String line by line and turned into a JSON tree. The tree is Gson's rather than
+     * org.json's, whose classes are only stubs in the android.jar this module compiles against.
+     */
+    static List<News> treeParse(InputStream inputStream) throws IOException {
+
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        String line = reader.readLine();
+
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+
+        JsonArray resultsArray = new JsonParser().parse(output.toString()).getAsJsonObject()
+                .getAsJsonObject("response")
+                .getAsJsonArray("results");
+
+        List<News> articles = new ArrayList<>();
+
+        for (int i = 0; i < resultsArray.size(); i++) {
+
+            JsonObject currentArticle = resultsArray.get(i).getAsJsonObject();
+            JsonObject fields = currentArticle.getAsJsonObject("fields");
+
+            String date = optString(currentArticle, "webPublicationDate", "");
+
+            articles.add(new News(optString(currentArticle, "id", ""),
+                    optString(currentArticle, "sectionId", ""),
+                    optString(currentArticle, "sectionName", ""),
+                    date, NewsDates.parse(date),
+                    optString(currentArticle, "webTitle", ""),
+                    optString(currentArticle, "webUrl", ""),
+                    optString(fields, "byline", "No author"),
+                    optString(fields, "trailText", "No trail text"),
+                    optString(fields, "thumbnail", "No thumbnail")));
+        }
+
+        return articles;
+    }
+
+    // Same as JSONObject.optString
+    private static String optString(JsonObject object, String name, String fallback) {
+        JsonElement element = object == null ? null : object.get(name);
+        return element == null || element.isJsonNull() ? fallback : element.getAsString();
+    }
+
+    // Returns the recorded response with the given number of results, or null
+    static byte[] recordedPayload(int results) throws IOException {
+
+        InputStream in = ParseBenchmark.class.getResourceAsStream("/payloads/search-" + results + ".json");
+
+        if (in == null) {
+            return null;
+        }
+
+        try {
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+
+            return out.toByteArray();
+
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the payloads of {@link ParseBenchmark} once per iteration with both parsers, so that
+ * {@link PeakHeapProfiler} reports the peak heap of a single parse as the secondary
+ * {@code peak.heap} result of each of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseHeapBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int results;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = ParseBenchmark.payload(results);
+    }
+
+    @Benchmark
+    public List<News> extractFeatureFromJson() throws IOException {
+        return NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public List<News> treeParse() throws IOException {
+        return ParseBenchmark.treeParse(new ByteArrayInputStream(payload));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Reports how far the heap grew above its settled size during each single-shot iteration, as
+ * the {@code peak.heap} secondary result in KB. The heap is collected and the peak usage of
+ * its pools reset before every iteration. Iterations of other modes run many invocations and
+ * are not reported.
+ */
+public class PeakHeapProfiler implements InternalProfiler {
+
+    private long mBaseline;
+
+    @Override
+    public String getDescription() {
+        return "Peak heap above the settled heap, per single-shot iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+
+        System.gc();
+
+        mBaseline = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                mBaseline += pool.getUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+                                                       IterationParams iterationParams,
+                                                       IterationResult result) {
+
+        if (benchmarkParams.getMode() != Mode.SingleShotTime) {
+            return Collections.emptyList();
+        }
+
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return Collections.singletonList(
+                new ScalarResult("peak.heap", (peak - mBaseline) / 1024.0, "KB", AggregationPolicy.AVG));
+    }
+}
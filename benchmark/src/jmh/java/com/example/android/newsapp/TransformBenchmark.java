@@ -0,0 +1,76 @@
+package com.example.android.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the list item text transforms of {@link NewsFormatter}: title slimming,
+ * trail text cleanup, date formatting and the whole per-page formatting stage.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class TransformBenchmark {
+
+    private static final int RESULTS = 200;
+
+    private NewsFormatter formatter;
+
+    private News[] articles;
+
+    private List<News> page;
+
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        byte[] payload = ParseBenchmark.payload(RESULTS);
+
+        page = NewsUtils.extractFeatureFromJson(new ByteArrayInputStream(payload));
+        articles = page.toArray(new News[page.size()]);
+        formatter = new NewsFormatter("Written by:\n", "Published on:\n", "\u2026", "yyyy-MM-dd");
+    }
+
+    private News next() {
+        News article = articles[index];
+        index = (index + 1) % articles.length;
+        return article;
+    }
+
+    @Benchmark
+    public String slimTitle() {
+        News article = next();
+        return NewsFormatter.slimTitle(article.getArticleTitle(), article.getArticleAuthor());
+    }
+
+    @Benchmark
+    public String trailText() {
+        return formatter.formattedTrailText(next().getTrailText());
+    }
+
+    @Benchmark
+    public long parseDate() {
+        return NewsDates.parse(next().getDatePublished());
+    }
+
+    @Benchmark
+    public NewsItem formatArticle() {
+        return formatter.format(next());
+    }
+
+    @Benchmark
+    public List<NewsItem> formatPage() {
+        return formatter.format(page);
+    }
+}